@@ -33,11 +33,28 @@ public class ApplicationLauncher {
                 .setMaxEventLoopExecuteTime(options.getMaxEventLoopExecuteTime() * 10) // 10 seconds.
                 .setBlockedThreadCheckInterval(8000);
 
-        vertx = Vertx.vertx();
+        logger.startupMessage();
 
-        ImportEventCodec.registerOn(vertx);
+        if (Configuration.isClustered()) {
+            // imports of files are indexed by the writers on all nodes in the cluster.
+            options.setClustered(true).setClusterHost(Configuration.getClusterHost());
 
-        logger.startupMessage();
+            Vertx.clusteredVertx(options, clustered -> {
+                if (clustered.succeeded()) {
+                    startup(clustered.result(), args);
+                } else {
+                    logger.applicationStartupFailure(clustered.cause());
+                }
+            });
+        } else {
+            startup(Vertx.vertx(options), args);
+        }
+    }
+
+    private void startup(Vertx vertx, String[] args) {
+        this.vertx = vertx;
+
+        ImportEventCodec.registerOn(vertx);
 
         start().setHandler(done -> {
             if (done.succeeded()) {
@@ -46,7 +63,7 @@ public class ApplicationLauncher {
                 if (args.length > 1) {
                     // import file from the command line.
                     new CommandLine(vertx, args);
-                } else {
+                } else if (Configuration.isWebsite()) {
                     // wait for the elasticsearch server to come online to show the import UI.
                     waitForElasticServerAvailability();
                 }
@@ -75,7 +92,7 @@ public class ApplicationLauncher {
     }
 
     /**
-     * Deploys the elastic writer and the website.
+     * Deploys the elastic writer and the website, unless the website is disabled.
      *
      * @return application deployment callback.
      */
@@ -83,7 +100,12 @@ public class ApplicationLauncher {
         Future<String> writer = Future.future();
         Future<String> website = Future.future();
         vertx.deployVerticle(new ElasticWriter(), writer.completer());
-        vertx.deployVerticle(new Website(), website.completer());
+
+        if (Configuration.isWebsite()) {
+            vertx.deployVerticle(new Website(), website.completer());
+        } else {
+            website.complete();
+        }
         return CompositeFuture.all(writer, website);
     }
 }
@@ -3,12 +3,9 @@ package com.codingchili.excelastic.controller;
 import com.codingchili.excelastic.logging.ApplicationLogger;
 import com.codingchili.excelastic.model.*;
 import io.vertx.core.Vertx;
-import io.vertx.core.eventbus.DeliveryOptions;
 
 import java.io.FileNotFoundException;
 
-import static com.codingchili.excelastic.model.ElasticWriter.INDEXING_TIMEOUT;
-
 /**
  * @author Robin Duda
  * <p>
@@ -45,34 +42,20 @@ public class CommandLine {
     private void importFile(ImportEvent event, String fileName) {
         logger.loadingFromFilesystem(fileName);
         logger.parsingStarted();
-        FileParser parser = ParserFactory.getByFilename(fileName);
-        try {
-            parser.setFileData(fileName, 1, fileName);
-
-            event.setParser(parser);
-            parser.initialize();
-
-            logger.importStarted(event.getIndex());
-            vertx.eventBus().send(Configuration.INDEXING_ELASTICSEARCH, event, getDeliveryOpts(),
-                    done -> {
-                        if (done.succeeded()) {
-                            logger.importCompleted();
-                        } else {
-                            logger.onImportFailed(done.cause());
-                        }
-                        System.exit(0); // vertx.close gives an error: "result already completed: success"
-                    });
-        } catch (ParserException e) {
-            logger.onParseFailed(fileName, e);
-        } catch (FileNotFoundException e) {
-            logger.onFileLoadFailed(fileName, e);
-        } finally {
-            parser.free();
-        }
-    }
-
-    private DeliveryOptions getDeliveryOpts() {
-        return new DeliveryOptions().setSendTimeout(INDEXING_TIMEOUT);
+        logger.importStarted(event.getIndex());
+
+        new FileImporter(vertx).importFile(event, fileName, fileName).setHandler(done -> {
+            if (done.succeeded()) {
+                logger.importCompleted();
+            } else if (done.cause() instanceof ParserException) {
+                logger.onParseFailed(fileName, (ParserException) done.cause());
+            } else if (done.cause() instanceof FileNotFoundException) {
+                logger.onFileLoadFailed(fileName, done.cause());
+            } else {
+                logger.onImportFailed(done.cause());
+            }
+            System.exit(0); // vertx.close gives an error: "result already completed: success"
+        });
     }
 
 }
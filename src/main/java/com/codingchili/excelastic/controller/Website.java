@@ -2,27 +2,30 @@ package com.codingchili.excelastic.controller;
 
 import com.codingchili.excelastic.logging.ApplicationLogger;
 import com.codingchili.excelastic.model.*;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
 import io.vertx.core.*;
-import io.vertx.core.eventbus.DeliveryOptions;
-import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.eventbus.Message;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.*;
 import io.vertx.ext.web.handler.*;
 import io.vertx.ext.web.templ.jade.JadeTemplateEngine;
 
-import java.io.FileNotFoundException;
-import java.util.Iterator;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static com.codingchili.excelastic.ApplicationLauncher.VERSION;
-import static com.codingchili.excelastic.model.Configuration.INDEXING_ELASTICSEARCH;
 import static com.codingchili.excelastic.model.ElasticWriter.*;
-import static com.codingchili.excelastic.model.ExcelParser.INDEX;
+import static com.codingchili.excelastic.model.ImportEvent.INDEX;
 
 /**
  * @author Robin Duda
@@ -39,20 +42,41 @@ public class Website extends AbstractVerticle {
     private static final String IMPORTED = "imported";
     private static final String NO_FILE_WAS_UPLOADED = "No file was uploaded.";
     private static final String VERIFY = "verify";
+    private static final String CSV = ".csv";
+    private static final String JOB_ID = "id";
+    private static final String JOBS = "/api/jobs";
+    private static final String EVENTS_PATH = "/events";
+    private static final String EVENTS = "events";
+    private static final String STATUS = "status";
+    private static final String ASYNC = "async";
+    private static final String PREFER = "Prefer";
+    private static final String RESPOND_ASYNC = "respond-async";
+    private static final String EVENT_STREAM = "text/event-stream";
+    private static final String NO_SUCH_JOB = "No import job with id '%s'.";
+    private static final String STREAM_CSV_ONLY = "Only .csv files can be streamed, set the file parameter to the file name.";
     private Logger logger = Logger.getLogger(getClass().getName());
+    private FileImporter importer;
+    private ImportScheduler scheduler;
+    private Map<String, Set<ServerWebSocket>> subscribers = new ConcurrentHashMap<>();
     private Vertx vertx;
 
     @Override
     public void init(Vertx vertx, Context context) {
         this.vertx = vertx;
+        this.importer = new FileImporter(vertx);
+        this.scheduler = new ImportScheduler(vertx);
     }
 
     @Override
     public void start(Future<Void> start) {
         Router router = Router.router(vertx);
-        router.route().handler(BodyHandler.create());
+
+        // streamed uploads must be routed before the body handler reads the whole body.
+        setStreamingAPI(router);
+        router.route().handler(BodyHandler.create(Configuration.getUploadDirectory()));
 
         setRouterAPI(router);
+        setJobsAPI(router);
         router.route("/favicon.ico").handler(ctx -> ctx.response().end());
         router.route("/static/*").handler(StaticHandler.create());
 
@@ -92,32 +116,78 @@ public class Website extends AbstractVerticle {
     }
 
     private HttpServer setupStatusService() {
+        // a single consumer routes the progress to the websockets that listen to the upload.
+        vertx.eventBus().<JsonObject>consumer(IMPORT_PROGRESS, this::onImportProgress);
+
         return vertx.createHttpServer().websocketHandler(websock -> {
             websock.writeFinalTextFrame(new JsonObject().put("message", getStatusServiceWelcomeMessage()).encode());
 
-            AtomicReference<String> uploadId = new AtomicReference<>("");
+            AtomicReference<String> uploadId = new AtomicReference<>();
 
-            // sets up an event bus consumer to listen for import progress.
-            MessageConsumer<JsonObject> consumer = vertx.eventBus().consumer(IMPORT_PROGRESS, data -> {
-                try {
-                    if (uploadId.get().equals(data.body().getString(UPLOAD_ID))) {
-                        websock.writeFinalTextFrame(data.body().encode());
-                    }
-                } catch (Throwable e) {
-                    websock.close();
-                }
-            });
             // we only support one message from the client - to set the upload ID to listen to.
-            websock.handler(handler -> uploadId.set(handler.toJsonObject().getString(UPLOAD_ID)));
+            websock.handler(handler -> {
+                unsubscribe(uploadId.get(), websock);
+                uploadId.set(handler.toJsonObject().getString(UPLOAD_ID));
+                subscribe(uploadId.get(), websock);
+            });
 
             // when the websocket is closed we should stop listening for status messages.
-            websock.closeHandler(closed -> consumer.unregister());
+            websock.closeHandler(closed -> unsubscribe(uploadId.get(), websock));
 
             // when the websocket excepts we should also stop listening for status messages.
-            websock.exceptionHandler(sock -> consumer.unregister());
+            websock.exceptionHandler(sock -> unsubscribe(uploadId.get(), websock));
         });
     }
 
+    private void subscribe(String uploadId, ServerWebSocket websock) {
+        if (uploadId != null) {
+            subscribers.computeIfAbsent(uploadId, key -> new HashSet<>()).add(websock);
+        }
+    }
+
+    private void unsubscribe(String uploadId, ServerWebSocket websock) {
+        Set<ServerWebSocket> sockets = subscribers.get(uploadId);
+
+        if (sockets != null) {
+            sockets.remove(websock);
+
+            if (sockets.isEmpty()) {
+                subscribers.remove(uploadId);
+            }
+        }
+    }
+
+    /**
+     * @param uploadId the id of an upload.
+     * @return the number of websockets that listen to the progress of the upload.
+     */
+    public int getSubscribers(String uploadId) {
+        return subscribers.getOrDefault(uploadId, Collections.emptySet()).size();
+    }
+
+    /**
+     * Writes the progress of an import to the websockets that listen to the upload, the
+     * progress is encoded once for all of the websockets.
+     *
+     * @param message the progress of an import.
+     */
+    private void onImportProgress(Message<JsonObject> message) {
+        Set<ServerWebSocket> sockets = subscribers.get(message.body().getString(UPLOAD_ID));
+
+        if (sockets != null) {
+            String frame = message.body().encode();
+
+            // closing a websocket unsubscribes it from the set.
+            for (ServerWebSocket websock : new ArrayList<>(sockets)) {
+                try {
+                    websock.writeFinalTextFrame(frame);
+                } catch (Throwable e) {
+                    websock.close();
+                }
+            }
+        }
+    }
+
     private String getStatusServiceWelcomeMessage() {
         return "websocket connected to excelastic " + VERSION + " using ElasticSearch " + getElasticVersion();
     }
@@ -142,7 +212,13 @@ public class Website extends AbstractVerticle {
                     event.setIndex(Configuration.getDefaultIndex());
                 }
 
-                parse(upload.uploadedFileName(), event, upload.fileName(), onComplete(context, upload.fileName()));
+                if (isAsync(context.request())) {
+                    // respond with the job instead of waiting for the import to complete.
+                    parse(upload.uploadedFileName(), event, upload.fileName(), onCompleteAsync(event, upload.fileName()));
+                    sendAccepted(context, event.getUploadId());
+                } else {
+                    parse(upload.uploadedFileName(), event, upload.fileName(), onComplete(context, upload.fileName()));
+                }
             } else {
                 context.put(MESSAGE, NO_FILE_WAS_UPLOADED);
                 context.reroute(ERROR);
@@ -150,6 +226,197 @@ public class Website extends AbstractVerticle {
         });
     }
 
+    /**
+     * Adds a route that imports a csv file from the body of the request while it is being
+     * uploaded, the file is not written to disk. The import options are query parameters.
+     *
+     * @param router the streaming route is added to the given router.
+     */
+    private void setStreamingAPI(Router router) {
+        router.post("/api/stream").handler(context -> {
+            HttpServerRequest request = context.request();
+            String fileName = request.params().get(FILE);
+
+            if (fileName == null || !fileName.toLowerCase().endsWith(CSV)) {
+                request.response().setStatusCode(400)
+                        .end(new JsonObject().put(MESSAGE, STREAM_CSV_ONLY).encode());
+                return;
+            }
+
+            ImportEvent event = ImportEvent.fromParams(request.params());
+            if (Configuration.isIndexLocked() || event.getIndex() == null) {
+                event.setIndex(Configuration.getDefaultIndex());
+            }
+
+            // the stream is paused until the writer requests rows from the parser.
+            CSVStreamParser parser = new CSVStreamParser(vertx.getOrCreateContext(), request, getContentLength(request));
+            parser.setFileData(null, event.getOffset(), fileName);
+
+            if (HttpHeaderValues.CONTINUE.contentEqualsIgnoreCase(request.getHeader(HttpHeaderNames.EXPECT))) {
+                request.response().writeContinue();
+            }
+
+            logger.info("Receiving streamed file with request id " + event.getUploadId());
+
+            // the upload is paused while the job is queued.
+            scheduler.submit(event, fileName, () -> {
+                sendParsingEvent(event);
+                return importer.importStream(event, parser);
+            }).setHandler(result -> {
+                if (result.succeeded()) {
+                    logger.info(String.format("Imported file '%s' successfully into '%s'.", fileName, event.getIndex()));
+                    request.response().end(new JsonObject()
+                            .put(JOB_ID, event.getUploadId())
+                            .put(INDEX, event.getIndex())
+                            .put(FILE, fileName)
+                            .put(IMPORTED, result.result()).encode());
+                } else {
+                    // the parser is only released by the importer if the job was started.
+                    parser.free();
+                    logger.log(Level.SEVERE, String.format("Failed to parse file '%s'.", fileName), result.cause());
+                    request.response().setStatusCode(500)
+                            .end(new JsonObject().put(MESSAGE, ApplicationLogger.traceToText(result.cause())).encode());
+                }
+            });
+        });
+    }
+
+    /**
+     * @return the length of the request body or -1 if the length is unknown or malformed.
+     */
+    private long getContentLength(HttpServerRequest request) {
+        String length = request.getHeader(HttpHeaderNames.CONTENT_LENGTH);
+        try {
+            return (length == null) ? -1 : Math.max(Long.parseLong(length.trim()), -1);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Adds routes to list the import jobs and to cancel a job.
+     *
+     * @param router the job routes are added to the given router.
+     */
+    private void setJobsAPI(Router router) {
+        router.get(JOBS + "/:" + JOB_ID + EVENTS_PATH).handler(this::streamJobEvents);
+
+        router.get(JOBS + "/:" + JOB_ID).handler(context -> {
+            Optional<ImportJob> job = scheduler.get(context.pathParam(JOB_ID));
+
+            if (job.isPresent()) {
+                context.response().putHeader(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+                        .end(job.get().toJson().encode());
+            } else {
+                sendNoSuchJob(context);
+            }
+        });
+
+        router.get(JOBS).handler(context -> {
+            JsonArray jobs = new JsonArray();
+            scheduler.getJobs().forEach(job -> jobs.add(job.toJson()));
+            context.response().putHeader(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+                    .end(jobs.encode());
+        });
+
+        router.delete(JOBS + "/:" + JOB_ID).handler(context -> {
+            Optional<ImportJob> job = scheduler.cancel(context.pathParam(JOB_ID));
+
+            if (job.isPresent()) {
+                context.response().putHeader(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+                        .end(job.get().toJson().encode());
+            } else {
+                sendNoSuchJob(context);
+            }
+        });
+    }
+
+    /**
+     * Sends the state of a job as server-sent events, an event is sent when the job is started,
+     * on progress and when the job finishes. The response ends when the job has finished.
+     *
+     * @param context the routing context of the request.
+     */
+    private void streamJobEvents(RoutingContext context) {
+        Optional<ImportJob> job = scheduler.get(context.pathParam(JOB_ID));
+
+        if (job.isPresent()) {
+            HttpServerResponse response = context.response()
+                    .setChunked(true)
+                    .putHeader(HttpHeaderNames.CONTENT_TYPE, EVENT_STREAM)
+                    .putHeader(HttpHeaderNames.CACHE_CONTROL, HttpHeaderValues.NO_CACHE);
+
+            Handler<ImportJob> listener = new Handler<ImportJob>() {
+                @Override
+                public void handle(ImportJob update) {
+                    response.write("event: " + update.getState().name().toLowerCase() + "\n" +
+                            "data: " + update.toJson().encode() + "\n\n");
+
+                    if (update.isFinished()) {
+                        update.removeListener(this);
+                        response.end();
+                    }
+                }
+            };
+            response.closeHandler(closed -> job.get().removeListener(listener));
+
+            // the current state is sent first, if the job has finished the response ends.
+            listener.handle(job.get());
+            if (!job.get().isFinished()) {
+                job.get().addListener(listener);
+            }
+        } else {
+            sendNoSuchJob(context);
+        }
+    }
+
+    private void sendNoSuchJob(RoutingContext context) {
+        context.response().setStatusCode(404)
+                .end(new JsonObject().put(MESSAGE, String.format(NO_SUCH_JOB, context.pathParam(JOB_ID))).encode());
+    }
+
+    /**
+     * @param request the upload request.
+     * @return true if the upload should be responded to when the import is submitted, either by
+     * the async parameter or by a "Prefer: respond-async" header.
+     */
+    private boolean isAsync(HttpServerRequest request) {
+        String prefer = request.getHeader(PREFER);
+        return request.params().contains(ASYNC) || (prefer != null && prefer.contains(RESPOND_ASYNC));
+    }
+
+    /**
+     * Responds with 202 and the location of the job that the upload was submitted as.
+     *
+     * @param context the routing context of the upload.
+     * @param id      the id of the job.
+     */
+    private void sendAccepted(RoutingContext context, String id) {
+        String location = JOBS + "/" + id;
+        context.response().setStatusCode(202)
+                .putHeader(HttpHeaderNames.LOCATION, location)
+                .putHeader(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+                .end(new JsonObject()
+                        .put(JOB_ID, id)
+                        .put(STATUS, location)
+                        .put(EVENTS, location + EVENTS_PATH).encode());
+    }
+
+    /**
+     * @param event    the event of the import.
+     * @param fileName the file name of the file that was uploaded.
+     * @return a future that logs the result of an import that was not waited for.
+     */
+    private Future<Integer> onCompleteAsync(ImportEvent event, String fileName) {
+        return Future.<Integer>future().setHandler(result -> {
+            if (result.succeeded()) {
+                logger.info(String.format("Imported file '%s' successfully into '%s'.", fileName, event.getIndex()));
+            } else {
+                logger.log(Level.SEVERE, String.format("Failed to parse file '%s'.", fileName), result.cause());
+            }
+        });
+    }
+
     /**
      * Creates a future that is called when the import completes either successfully or by an error.
      *
@@ -193,30 +460,10 @@ public class Website extends AbstractVerticle {
      * @param future           callback on completed parse + indexing.
      */
     private void parse(String uploadedFileName, ImportEvent event, String fileName, Future<Integer> future) {
-        vertx.executeBlocking(blocking -> {
-            FileParser parser = ParserFactory.getByFilename(fileName);
-            try {
-                parser.setFileData(uploadedFileName, event.getOffset(), fileName);
-
-                sendParsingEvent(event);
-                parser.initialize();
-                event.setParser(parser);
-
-                // submit an import event.
-                vertx.eventBus().send(INDEXING_ELASTICSEARCH, event, getDeliveryOptions(),
-                        reply -> {
-                            if (reply.succeeded()) {
-                                blocking.complete(parser.getNumberOfElements());
-                            } else {
-                                blocking.fail(reply.cause());
-                            }
-                        });
-            } catch (FileNotFoundException | ParserException | NumberFormatException e) {
-                blocking.fail(e);
-            } finally {
-                parser.free();
-            }
-        }, false, future);
+        scheduler.submit(event, fileName, () -> {
+            sendParsingEvent(event);
+            return importer.importFile(event, uploadedFileName, fileName);
+        }).setHandler(future);
     }
 
     private void sendParsingEvent(ImportEvent event) {
@@ -225,7 +472,4 @@ public class Website extends AbstractVerticle {
                 .put(UPLOAD_ID, event.getUploadId()));
     }
 
-    private DeliveryOptions getDeliveryOptions() {
-        return new DeliveryOptions().setSendTimeout(INDEXING_TIMEOUT);
-    }
 }
\ No newline at end of file
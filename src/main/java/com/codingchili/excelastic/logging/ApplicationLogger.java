@@ -5,11 +5,11 @@ import io.vertx.core.http.HttpClientResponse;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.file.Path;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static com.codingchili.excelastic.ApplicationLauncher.VERSION;
-import static com.codingchili.excelastic.model.ElasticWriter.MAX_BATCH;
 
 /**
  * @author Robin Duda
@@ -33,7 +33,8 @@ public class ApplicationLogger {
     public void startupMessage() {
         logger.info(String.format("Starting excelastic %s..", VERSION));
         logger.info("to import files without the web interface use please supply arguments for <fileName> <indexName>");
-        logger.info("optional arguments: --mapping <mappingName> --offset <number> --clear");
+        logger.info("optional arguments: --mapping <mappingName> --offset <number> --clear --fast-load");
+        logger.info("optional arguments for excel files: --sheets <sheetName,sheetName|*> --index-by-sheet");
     }
 
     public void applicationStartup() {
@@ -118,6 +119,28 @@ public class ApplicationLogger {
         logger.log(Level.SEVERE, String.format("Failed to import file %s", fileName), e);
     }
 
+    /**
+     * Called when the writer has completed an import.
+     *
+     * @param requests    the number of requests that has been sent to elasticsearch.
+     * @param connections the number of connections that has been opened to elasticsearch.
+     * @param open        the number of connections that are currently open.
+     */
+    public void onConnectionReuse(long requests, long connections, int open) {
+        logger.info(String.format("Sent %d requests over %d connections (%.1f requests per connection, %d open).",
+                requests, connections, requests * 1.0f / Math.max(connections, 1), open));
+    }
+
+    /**
+     * Called when an import has completed with items that could not be indexed.
+     *
+     * @param count the number of items that was not indexed.
+     * @param path  the file that the items was written to.
+     */
+    public void onDeadLettered(int count, Path path) {
+        logger.warning(String.format("Failed to index %d items, the items was written to %s.", count, path));
+    }
+
     /**
      * Called when the loading of a file has failed.
      *
@@ -165,15 +188,16 @@ public class ApplicationLogger {
      * @param response the http server response from the elasticsearch server.
      * @param total    the total number of items to import.
      * @param event    the import event that the batch belongs to.
-     * @param received the starting range of the imported items/
+     * @param received the number of items that has been imported.
+     * @param count    the number of items in the batch.
      * @param percent  the total progress of the import.
      */
     public void onImportedBatch(HttpClientResponse response, ImportEvent event, int total,
-                                int received, float percent) {
+                                int received, int count, float percent) {
         logger.info(
-                String.format("Submitted items [%d -> %d] of %d with result [%d] %s into '%s' [%.1f%%]",
-                        ((received > MAX_BATCH) ? (received - MAX_BATCH) - 1 : 0),
-                        received - 1,
+                String.format("Submitted %d items (%d of %d) with result [%d] %s into '%s' [%.1f%%]",
+                        count,
+                        received,
                         total,
                         response.statusCode(),
                         response.statusMessage(),
@@ -191,10 +215,31 @@ public class ApplicationLogger {
 
     /**
      * @param version the version of the elasticsearch server that the writer connected to.
+     * @param node    the node that the writer connected to.
+     */
+    public void onWriterConnected(String version, ElasticNodes.Node node) {
+        logger.info(String.format("Connected to elasticsearch server %s at %s", version, node));
+    }
+
+    /**
+     * @param index the index that refresh and replicas was disabled for.
+     */
+    public void onFastLoadStarted(String index) {
+        logger.info(String.format("Disabled refresh and replicas of index %s while importing.", index));
+    }
+
+    /**
+     * @param index the index that the settings was restored for.
+     */
+    public void onFastLoadCompleted(String index) {
+        logger.info(String.format("Restored refresh and replicas of index %s.", index));
+    }
+
+    /**
+     * @param node a node that was discovered by sniffing the cluster.
      */
-    public void onWriterConnected(String version) {
-        logger.info(String.format("Connected to elasticsearch server %s at %s:%d",
-                version, Configuration.getElasticHost(), Configuration.getElasticPort()));
+    public void onNodeDiscovered(ElasticNodes.Node node) {
+        logger.info(String.format("Discovered elasticsearch node at %s", node));
     }
 
     /**
@@ -0,0 +1,267 @@
+package com.codingchili.excelastic.model;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * Encodes items into the lines of a bulk request without serializing them with jackson.
+ * <p>
+ * The bytes of each field name are escaped once and cached, as the same fields are present
+ * in every item of a file. The lines are encoded into a reusable array so that they can be
+ * written with a single copy into the body of the request.
+ * <p>
+ * When id columns are given each action line includes an _id derived from the item, so that
+ * importing the same item again overwrites the existing document instead of duplicating it.
+ * The id is the value of the id column, or a murmur3 hash of the id columns or the whole row.
+ */
+public class BulkEncoder {
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ID = ",\"_id\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ACTION_END = "}}\n".getBytes(StandardCharsets.US_ASCII);
+    private final Map<String, byte[]> names = new HashMap<>();
+    private final List<String> idColumns;
+    private final byte[] header;
+    private BulkEncoder action;
+    private byte[] bytes = new byte[1024];
+    private int length;
+
+    /**
+     * @param header the action line that is written before each item, including the line feed.
+     */
+    public BulkEncoder(String header) {
+        this(header, Collections.emptyList());
+    }
+
+    /**
+     * @param header    the action line that is written before each item, including the line feed.
+     * @param idColumns the columns to derive the _id of each item from, if empty the id is
+     *                  generated by elasticsearch. Contains {@link ImportEvent#ALL_COLUMNS} to
+     *                  hash the whole row.
+     */
+    public BulkEncoder(String header, List<String> idColumns) {
+        this.idColumns = idColumns;
+
+        if (idColumns.isEmpty()) {
+            this.header = header.getBytes(StandardCharsets.UTF_8);
+        } else {
+            // the _id is appended to the action: remove the closing braces and the line feed.
+            this.header = header.substring(0, header.lastIndexOf("}}")).getBytes(StandardCharsets.UTF_8);
+            this.action = new BulkEncoder("");
+        }
+    }
+
+    /**
+     * Encodes the action line and the item as two lines of json.
+     *
+     * @param item the item to encode.
+     * @return the number of bytes in the encoded lines, see {@link #getBytes()}.
+     */
+    public int encode(JsonObject item) {
+        length = 0;
+
+        if (idColumns.isEmpty()) {
+            write(header);
+            writeObject(item.getMap().entrySet());
+        } else {
+            writeObject(item.getMap().entrySet());
+            int document = length;
+            String id = getId(item, document);
+
+            action.length = 0;
+            action.write(header);
+            action.write(ID);
+            action.writeString(id);
+            action.write(ACTION_END);
+
+            // move the document after the action line.
+            ensure(action.length);
+            System.arraycopy(bytes, 0, bytes, action.length, document);
+            System.arraycopy(action.bytes, 0, bytes, 0, action.length);
+            length = document + action.length;
+        }
+        return length;
+    }
+
+    /**
+     * @param item     the item to get the id of.
+     * @param document the number of bytes of the encoded item.
+     * @return the value of a single id column, or a hash of the id columns. If the id
+     * column has no value the id is a hash of the whole row.
+     */
+    private String getId(JsonObject item, int document) {
+        if (idColumns.contains(ImportEvent.ALL_COLUMNS)) {
+            return Murmur3.hash128(bytes, 0, document);
+        } else if (idColumns.size() == 1) {
+            Object value = item.getValue(idColumns.get(0));
+            if (value == null || value.toString().isEmpty()) {
+                return Murmur3.hash128(bytes, 0, document);
+            } else {
+                return value.toString();
+            }
+        } else {
+            // encode the id columns after the document to hash them without ambiguity.
+            Map<String, Object> keys = new LinkedHashMap<>();
+            for (String column : idColumns) {
+                keys.put(column, item.getValue(column));
+            }
+            writeObject(keys.entrySet());
+            String id = Murmur3.hash128(bytes, document, length - document);
+            length = document;
+            return id;
+        }
+    }
+
+    private void writeObject(Set<Map.Entry<String, Object>> entries) {
+        write('{');
+
+        boolean first = true;
+        for (Map.Entry<String, Object> entry : entries) {
+            if (!first) {
+                write(',');
+            }
+            first = false;
+            write(names.computeIfAbsent(entry.getKey(), BulkEncoder::encodeName));
+            writeValue(entry.getValue());
+        }
+
+        write('}');
+        write('\n');
+    }
+
+    /**
+     * @return the bytes of the last encoded lines, the array is reused by the next call to encode.
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    private static byte[] encodeName(String name) {
+        BulkEncoder encoder = new BulkEncoder("");
+        encoder.writeString(name);
+        encoder.write(':');
+
+        byte[] encoded = new byte[encoder.length];
+        System.arraycopy(encoder.bytes, 0, encoded, 0, encoder.length);
+        return encoded;
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            write(NULL);
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Boolean) {
+            write((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Long || value instanceof Integer) {
+            writeAscii(value.toString());
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            // jackson quotes numbers that are not valid json numbers.
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                writeString(value.toString());
+            } else {
+                writeAscii(value.toString());
+            }
+        } else {
+            // values that the parsers does not produce, like nested objects.
+            write(Json.encode(value).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void writeString(String text) {
+        ensure(text.length() * 6 + 2);
+        bytes[length++] = '"';
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                bytes[length++] = (byte) c;
+            } else if (c == '"' || c == '\\') {
+                bytes[length++] = '\\';
+                bytes[length++] = (byte) c;
+            } else if (c < 0x20) {
+                writeControl(c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int point = Character.toCodePoint(c, text.charAt(++i));
+                bytes[length++] = (byte) (0xf0 | (point >> 18));
+                bytes[length++] = (byte) (0x80 | ((point >> 12) & 0x3f));
+                bytes[length++] = (byte) (0x80 | ((point >> 6) & 0x3f));
+                bytes[length++] = (byte) (0x80 | (point & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // an unpaired surrogate cannot be encoded: replace it as String#getBytes does.
+                bytes[length++] = '?';
+            } else if (c < 0x800) {
+                bytes[length++] = (byte) (0xc0 | (c >> 6));
+                bytes[length++] = (byte) (0x80 | (c & 0x3f));
+            } else {
+                bytes[length++] = (byte) (0xe0 | (c >> 12));
+                bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                bytes[length++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        bytes[length++] = '"';
+    }
+
+    private void writeControl(char c) {
+        bytes[length++] = '\\';
+        switch (c) {
+            case '\n':
+                bytes[length++] = 'n';
+                break;
+            case '\r':
+                bytes[length++] = 'r';
+                break;
+            case '\t':
+                bytes[length++] = 't';
+                break;
+            case '\b':
+                bytes[length++] = 'b';
+                break;
+            case '\f':
+                bytes[length++] = 'f';
+                break;
+            default:
+                bytes[length++] = 'u';
+                bytes[length++] = '0';
+                bytes[length++] = '0';
+                bytes[length++] = HEX[c >> 4];
+                bytes[length++] = HEX[c & 0xf];
+        }
+    }
+
+    private void writeAscii(String text) {
+        ensure(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            bytes[length++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void write(byte[] data) {
+        ensure(data.length);
+        System.arraycopy(data, 0, bytes, length, data.length);
+        length += data.length;
+    }
+
+    private void write(char c) {
+        ensure(1);
+        bytes[length++] = (byte) c;
+    }
+
+    private void ensure(int required) {
+        if (length + required > bytes.length) {
+            byte[] grown = new byte[Math.max(bytes.length * 2, length + required)];
+            System.arraycopy(bytes, 0, grown, 0, length);
+            bytes = grown;
+        }
+    }
+}
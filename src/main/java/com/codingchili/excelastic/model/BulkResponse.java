@@ -0,0 +1,195 @@
+package com.codingchili.excelastic.model;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * The result of a bulk request, read with a streaming json parser.
+ * <p>
+ * Only the items that has failed are kept, the position of a failed item is the
+ * same as the position of the item in the bulk request.
+ */
+public class BulkResponse {
+    public static final int STATUS_TOO_MANY_REQUESTS = 429;
+    public static final int STATUS_CONFLICT = 409;
+    private static final JsonFactory factory = new JsonFactory();
+    private static final String TOOK = "took";
+    private static final String ERRORS = "errors";
+    private static final String ITEMS = "items";
+    private static final String STATUS = "status";
+    private static final String ERROR = "error";
+    private static final String TYPE = "type";
+    private static final String REASON = "reason";
+    private final List<Failure> failures = new ArrayList<>();
+    private long took = -1;
+    private Boolean errors = null;
+
+    /**
+     * @param buffer the body of a bulk response.
+     * @return the parsed response, items are only read if the response has errors.
+     */
+    public static BulkResponse parse(Buffer buffer) {
+        BulkResponse response = new BulkResponse();
+
+        try (JsonParser parser = factory.createParser(buffer.getBytes())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new DecodeException("Expected a bulk response object.");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+
+                switch (field) {
+                    case TOOK:
+                        response.took = parser.getLongValue();
+                        break;
+                    case ERRORS:
+                        response.errors = parser.getBooleanValue();
+                        break;
+                    case ITEMS:
+                        if (Boolean.FALSE.equals(response.errors)) {
+                            // no item has failed: avoid reading the items.
+                            return response;
+                        } else {
+                            response.readItems(parser);
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new DecodeException(e.getMessage());
+        }
+        return response;
+    }
+
+    private void readItems(JsonParser parser) throws IOException {
+        int position = 0;
+
+        // each item is an object with the action as the only field: {"index": {..}}
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            Failure failure = new Failure(position++);
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                parser.nextToken();
+                readItem(parser, failure);
+            }
+
+            if (failure.status >= 300) {
+                failures.add(failure);
+            }
+        }
+    }
+
+    private void readItem(JsonParser parser, Failure failure) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+
+            if (STATUS.equals(field)) {
+                failure.status = parser.getIntValue();
+            } else if (ERROR.equals(field) && token == JsonToken.START_OBJECT) {
+                readError(parser, failure);
+            } else if (ERROR.equals(field)) {
+                failure.reason = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readError(JsonParser parser, Failure failure) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            if (TYPE.equals(field)) {
+                failure.type = parser.getText();
+            } else if (REASON.equals(field)) {
+                failure.reason = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * @return the time in milliseconds it took to process the request or -1 if not present.
+     */
+    public long getTook() {
+        return took;
+    }
+
+    /**
+     * @return true if any item in the request has failed.
+     */
+    public boolean hasErrors() {
+        return Boolean.TRUE.equals(errors) || !failures.isEmpty();
+    }
+
+    /**
+     * @return the items that has failed, ordered by their position in the request.
+     */
+    public List<Failure> getFailures() {
+        return failures;
+    }
+
+    /**
+     * An item in a bulk request that has failed.
+     */
+    public static class Failure {
+        private final int position;
+        private int status;
+        private String type;
+        private String reason;
+
+        Failure(int position) {
+            this.position = position;
+        }
+
+        /**
+         * @return the position of the item in the bulk request.
+         */
+        public int getPosition() {
+            return position;
+        }
+
+        /**
+         * @return the http status of the item.
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * @return true if the item was rejected because the cluster is overloaded.
+         */
+        public boolean isRejected() {
+            return status == STATUS_TOO_MANY_REQUESTS;
+        }
+
+        /**
+         * @return true if the item was not created because a document with the same id exists.
+         */
+        public boolean isConflict() {
+            return status == STATUS_CONFLICT;
+        }
+
+        /**
+         * @return a description of the error.
+         */
+        public String getError() {
+            return (type == null) ? reason : type + ": " + reason;
+        }
+    }
+}
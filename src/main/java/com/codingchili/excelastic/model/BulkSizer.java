@@ -0,0 +1,70 @@
+package com.codingchili.excelastic.model;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * Finds the size in bytes of bulk requests that gives the highest indexing throughput.
+ * <p>
+ * The size is changed by a step after each completed request, it keeps changing in the
+ * same direction while the throughput improves and reverses when the throughput drops.
+ * When requests are rejected because the cluster is overloaded the size is halved.
+ */
+public class BulkSizer {
+    private static final double STEP = 0.25;
+    private final int min;
+    private final int max;
+    private double throughput = 0;
+    private int direction = 1;
+    private int target;
+
+    /**
+     * @param min the minimum size of a request in bytes, this is the initial size.
+     * @param max the maximum size of a request in bytes.
+     */
+    public BulkSizer(int min, int max) {
+        this.min = min;
+        this.max = Math.max(min, max);
+        this.target = min;
+    }
+
+    /**
+     * @return the size in bytes of the next bulk request.
+     */
+    public int getTarget() {
+        return target;
+    }
+
+    /**
+     * Adjusts the size using the throughput of a completed request.
+     *
+     * @param bytes the size of the completed request.
+     * @param took  the time in milliseconds it took elasticsearch to process the request.
+     */
+    public void onCompleted(int bytes, long took) {
+        double current = bytes / (double) Math.max(took, 1);
+
+        if (current < throughput) {
+            direction = -direction;
+        }
+        throughput = current;
+        resize(target * (1 + direction * STEP));
+    }
+
+    /**
+     * Halves the size when a request is rejected, the size is then increased again.
+     */
+    public void onRejected() {
+        throughput = 0;
+        direction = 1;
+        resize(target / 2.0);
+    }
+
+    private void resize(double size) {
+        target = (int) Math.max(min, Math.min(max, size));
+
+        if (target == min) {
+            // cannot shrink any further: probe larger sizes again.
+            direction = 1;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.codingchili.excelastic.model;
 
 import com.codingchili.excelastic.logging.ApplicationLogger;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
@@ -8,17 +10,23 @@ import org.reactivestreams.Subscription;
 import java.io.*;
 import java.nio.*;
 import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.*;
 
 /**
  * @author Robin Duda
  * <p>
  * Parses CSV files.
+ * <p>
+ * When parallel parsing is enabled the file is split into segments at record boundaries
+ * which are validated concurrently, the rows are then converted in chunks on a fork-join pool.
  */
 public class CSVParser implements FileParser {
     private static final int MAX_LINE_LENGTH = 524288;
+    private static final int CHECKPOINT_INTERVAL = 1024;
     private static long MAP_SIZE = Integer.MAX_VALUE / 4;
+    private static ForkJoinPool pool;
 
     private static final char TOKEN_NULL = '\0';
     private static final char TOKEN_CR = '\r';
@@ -26,18 +34,20 @@ public class CSVParser implements FileParser {
     private static final char TOKEN_QUOTE = '\"';
     private static final char TOKEN_SEPARATOR = ',';
 
+    private static final ThreadLocal<ByteBuffer> buffers =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_LINE_LENGTH));
+
     private ApplicationLogger logger = new ApplicationLogger(getClass());
-    private ByteBuffer buffer = ByteBuffer.allocate(MAX_LINE_LENGTH);
-    private JsonObject headers = new JsonObject();
-    private Iterator<String> header;
+    private List<Chunk> chunks = new ArrayList<>();
+    private boolean parallel = Configuration.isParallelParsing();
+    private boolean ordered = Configuration.isOrderedImport();
+    private ColumnType[] types;
+    private String[] headers;
     private RandomAccessFile file;
     private MappedByteBuffer[] maps;
     private String fileName;
-    private boolean dryRun = true;
     private long fileSize;
-    private long index = 0;
     private int rows = 0;
-    private long row = 0;
 
     @Override
     public void setFileData(String localFileName, int _unused, String fileName) throws FileNotFoundException {
@@ -58,7 +68,7 @@ public class CSVParser implements FileParser {
                         Math.min(MAP_SIZE, unmapped));
             }
         } catch (Throwable e) {
-            throw new ParserException(e, row);
+            throw new ParserException(e, 0);
         }
     }
 
@@ -66,19 +76,46 @@ public class CSVParser implements FileParser {
         MAP_SIZE = bytes;
     }
 
-    private byte get() {
+    /**
+     * @param parallel if true the file is validated and converted on multiple threads.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * @param ordered if false rows may be emitted in any order when parsing in parallel,
+     *                this avoids waiting for slow chunks.
+     */
+    public void setOrdered(boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Configuration.getParserThreads());
+        }
+        return pool;
+    }
+
+    private byte get(long index) {
         int page = (int) (index / MAP_SIZE);
         int offset = (int) (index - (page * MAP_SIZE));
-        index++;
         return maps[page].get(offset);
     }
 
-    private void reset() {
-        index = 0;
-        row = 0;
-        for (Buffer map : maps) {
-            map.position(0);
-        }
+    /**
+     * Finds the next token without reading past the end of the page that contains the given offset.
+     *
+     * @param from the offset to start searching from.
+     * @param to   the offset to stop searching at.
+     * @return the offset of the next token, the end of the page or the given end offset.
+     */
+    private long scan(long from, long to) {
+        int page = (int) (from / MAP_SIZE);
+        long base = page * MAP_SIZE;
+        int limit = (int) (Math.min(to, base + MAP_SIZE) - base);
+        return base + CSVTokenScanner.next(maps[page], (int) (from - base), limit);
     }
 
     @Override
@@ -86,184 +123,668 @@ public class CSVParser implements FileParser {
         return new HashSet<>(Collections.singletonList(".csv"));
     }
 
+    /**
+     * Validates the file in a single pass: reads the headers, counts the rows and
+     * verifies that each row matches the headers. The start offset of every
+     * {@link #CHECKPOINT_INTERVAL}th row is recorded so that the import can start
+     * without scanning the file again, or be split into chunks for parallel conversion.
+     */
     @Override
     public void initialize() {
         logger.parsingFile(fileName, 0);
 
-        readRowCount();
-        readHeaders();
+        long start = readHeaders();
+
+        chunks.clear();
+        if (parallel) {
+            validateParallel(start);
+        } else {
+            validate(Collections.singletonList(new Cursor(start, fileSize, 0)));
+        }
+
+        rows = 0;
+        for (Chunk chunk : chunks) {
+            chunk.row = rows;
+            rows += chunk.rows;
+        }
+
+        logger.parsedFile(rows, fileName);
+    }
+
+    /**
+     * Splits the file into one segment per thread and validates them concurrently.
+     * The quotes in each segment are counted first, so that the segments can be split
+     * at record boundaries even if a value contains a newline within quotes.
+     *
+     * @param start the offset of the first row after the headers.
+     */
+    private void validateParallel(long start) {
+        int parts = Configuration.getParserThreads();
+        long size = Math.max((fileSize - start) / parts, 1);
+        long[] splits = new long[parts + 1];
+
+        for (int i = 0; i < parts; i++) {
+            splits[i] = Math.min(start + size * i, fileSize);
+        }
+        splits[parts] = fileSize;
+
+        List<Callable<long[]>> counters = new ArrayList<>();
+        for (int i = 0; i < parts; i++) {
+            long from = splits[i];
+            long to = splits[i + 1];
+            counters.add(() -> countQuotes(from, to));
+        }
+        List<long[]> quotes = collect(getPool().invokeAll(counters));
+
+        // a null byte marks the end of the data.
+        long end = quotes.stream().mapToLong(count -> count[1]).min().orElse(fileSize);
+        long[] boundaries = new long[parts + 1];
+        boolean quoted = false;
+        boundaries[0] = start;
+        boundaries[parts] = end;
+
+        for (int i = 1; i < parts; i++) {
+            quoted ^= (quotes.get(i - 1)[0] % 2 == 1);
+            boundaries[i] = Math.max(findRecordEnd(Math.min(splits[i], end), end, quoted), boundaries[i - 1]);
+        }
+
+        List<Cursor> cursors = new ArrayList<>();
+        for (int i = 0; i < parts; i++) {
+            cursors.add(new Cursor(boundaries[i], boundaries[i + 1], 0));
+        }
 
-        reset();
+        try {
+            validate(cursors);
+        } catch (ParserException e) {
+            // row numbers are relative to the segment: validate sequentially to report the offending row.
+            chunks.clear();
+            validate(Collections.singletonList(new Cursor(start, end, 0)));
+        }
+    }
 
-        readRow(); // skip headers row.
-        for (int i = 0; i < rows; i++) {
-            readRow();
+    /**
+     * Validates the rows of each cursor, the chunks of rows and the column types
+     * of each cursor are combined in the order of the given cursors.
+     *
+     * @param cursors the cursors to validate, each cursor is validated on the pool if there are many.
+     */
+    private void validate(List<Cursor> cursors) {
+        if (cursors.size() == 1) {
+            chunks.addAll(cursors.get(0).validate());
+        } else {
+            List<Callable<List<Chunk>>> validators = new ArrayList<>();
+            cursors.forEach(cursor -> validators.add(cursor::validate));
+            collect(getPool().invokeAll(validators)).forEach(chunks::addAll);
         }
 
-        logger.parsedFile(rows - 1, fileName);
+        if (DataTypes.isCompatible()) {
+            types = null;
+        } else {
+            types = new ColumnType[headers.length];
+            Arrays.fill(types, ColumnType.EMPTY);
+
+            for (Cursor cursor : cursors) {
+                for (int i = 0; i < types.length; i++) {
+                    types[i] = types[i].merge(cursor.profile[i]);
+                }
+            }
+        }
     }
 
-    private void readRowCount() {
-        reset();
+    private static <T> List<T> collect(List<Future<T>> futures) {
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(await(future));
+        }
+        return results;
+    }
 
-        for (long i = 0; i < fileSize; i++) {
-            if (get() == TOKEN_LF) {
-                rows++;
-                row = rows;
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else {
+                throw new ParserException(e.getCause());
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ParserException(e);
         }
     }
 
-    private void readHeaders() {
-        AtomicInteger fieldId = new AtomicInteger(0);
-        reset();
+    /**
+     * @param from the offset to start counting from.
+     * @param to   the offset to stop counting at.
+     * @return the number of quotes in the given range and the offset of the first
+     * null byte, or the size of the file if none is present.
+     */
+    private long[] countQuotes(long from, long to) {
+        long quotes = 0;
+        long i = from;
+
+        while (i < to) {
+            int page = (int) (i / MAP_SIZE);
+            long base = page * MAP_SIZE;
+            int limit = (int) (Math.min(to, base + MAP_SIZE) - base);
+            i = base + CSVTokenScanner.nextQuote(maps[page], (int) (i - base), limit);
+
+            if (i < to) {
+                if (get(i) == TOKEN_NULL) {
+                    return new long[]{quotes, i};
+                }
+                quotes++;
+                i++;
+            }
+        }
+        return new long[]{quotes, fileSize};
+    }
+
+    /**
+     * @param from   the offset to start searching from.
+     * @param end    the end of the data.
+     * @param quoted true if the given offset is within a quoted value.
+     * @return the offset of the first record that starts at or after the given offset.
+     */
+    private long findRecordEnd(long from, long end, boolean quoted) {
+        for (long i = from; i < end; i++) {
+            byte current = get(i);
+            if (current == TOKEN_QUOTE) {
+                quoted = !quoted;
+            } else if (current == TOKEN_LF && !quoted) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
 
-        for (long i = 0; i < fileSize; i++) {
-            byte current = get();
+    /**
+     * Reads the header row.
+     *
+     * @return the offset of the first row after the headers.
+     */
+    private long readHeaders() {
+        ByteBuffer buffer = buffers.get();
+        long index = 0;
+
+        while (index < fileSize) {
+            byte current = get(index++);
             if (current == TOKEN_LF) {
-                Arrays.stream(new String(buffer.array()).split(","))
-                        .map(header -> header.replaceAll("\"", ""))
-                        .map(header -> (header.isEmpty()) ? "header_" + fieldId.incrementAndGet() : header)
-                        .map(String::trim).forEach(header -> {
-                    headers.put(header, "<empty>");
-                });
                 break;
             } else {
                 buffer.put(current);
             }
         }
+
+        headers = getHeaders(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
         ((Buffer) buffer).clear();
+        return index;
+    }
+
+    /**
+     * Splits the header row into column names, shared with the {@link CSVStreamParser} so that
+     * a file results in the same documents when it is streamed. Quotes are removed, empty
+     * headers are named header_N and repeated headers are suffixed with a number.
+     *
+     * @param line the header row as text, without the line feed.
+     * @return the unique names of the columns.
+     */
+    static String[] getHeaders(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (char current : line.toCharArray()) {
+            if (current == TOKEN_QUOTE) {
+                quoted = !quoted;
+            } else if (current == TOKEN_SEPARATOR && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(current);
+            }
+        }
+        fields.add(field.toString());
+
+        Set<String> unique = new HashSet<>();
+        String[] headers = new String[fields.size()];
+        int empty = 0;
+
+        for (int i = 0; i < headers.length; i++) {
+            String header = fields.get(i).trim();
+            if (header.isEmpty()) {
+                header = "header_" + (++empty);
+            }
+            String name = header;
+            for (int repeated = 2; !unique.add(name); repeated++) {
+                name = header + "_" + repeated;
+            }
+            headers[i] = name;
+        }
+        return headers;
+    }
+
+    @Override
+    public int getNumberOfElements() {
+        return rows;
+    }
+
+    @Override
+    public Map<String, ColumnType> getColumnTypes() {
+        Map<String, ColumnType> columns = new LinkedHashMap<>();
+        if (types != null) {
+            for (int i = 0; i < headers.length; i++) {
+                columns.put(headers[i], types[i]);
+            }
+        }
+        return columns;
     }
 
-    private void process(AtomicInteger columnsRead, JsonObject json) {
-        columnsRead.incrementAndGet();
+    @Override
+    public void free() {
+        try {
+            file.close();
+        } catch (IOException e) {
+            logger.onError(e);
+        }
+    }
 
-        if (columnsRead.get() > headers.size()) {
-            throw new ColumnsHeadersMismatchException(columnsRead.get(), headers.size(), row + 1);
+    @Override
+    public void subscribe(Subscriber<? super JsonObject> subscriber) {
+        if (parallel) {
+            subscriber.onSubscribe(new ParallelSubscription(subscriber));
         } else {
-            if (!dryRun) {
-                int read = buffer.position();
-                byte[] line = new byte[read + 1];
+            subscriber.onSubscribe(new Subscription() {
+                // the first chunk starts at the first row after the headers.
+                private Cursor cursor = new Cursor(chunks.isEmpty() ? 0 : chunks.get(0).start, fileSize, 0);
+                private int emitted = 0;
+
+                @Override
+                public void request(long count) {
+                    for (int i = 0; i < count && emitted < rows; i++) {
+                        JsonObject json = new JsonObject();
+                        cursor.readRow(json);
+                        emitted++;
+                        subscriber.onNext(json);
+
+                        if (emitted == rows) {
+                            subscriber.onComplete();
+                        }
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    // send no more items!
+                }
+            });
+        }
+    }
+
+    /**
+     * Converts chunks of rows on the fork-join pool, a bounded number of chunks are
+     * converted ahead of the requests from the subscriber.
+     * <p>
+     * Requests never wait for a chunk to be converted, rows are emitted on the context
+     * that requested them when the next chunk completes. Converted chunks are only
+     * referenced until their rows are emitted.
+     */
+    private class ParallelSubscription implements Subscription {
+        private Deque<CompletableFuture<List<JsonObject>>> pending = new ArrayDeque<>();
+        private Iterator<JsonObject> current = Collections.emptyIterator();
+        private Subscriber<? super JsonObject> subscriber;
+        private int window = getPool().getParallelism() * 2;
+        private Context context;
+        private boolean cancelled = false;
+        private boolean waiting = false;
+        private long demand = 0;
+        private int submitted = 0;
+        private int emitted = 0;
+
+        ParallelSubscription(Subscriber<? super JsonObject> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public synchronized void request(long count) {
+            context = Vertx.currentContext();
+            demand += count;
+            drain();
+        }
+
+        private synchronized void drain() {
+            submit();
+
+            while (demand > 0 && emitted < rows && !cancelled) {
+                if (!current.hasNext()) {
+                    CompletableFuture<List<JsonObject>> next = next();
+
+                    if (next == null) {
+                        // emits the rows when the next chunk is converted.
+                        waitForChunk();
+                        return;
+                    }
+                    pending.remove(next);
+
+                    try {
+                        current = next.join().iterator();
+                    } catch (CompletionException e) {
+                        cancel();
+                        subscriber.onError(e.getCause());
+                        return;
+                    }
+                    submit();
+                }
+                demand--;
+                emitted++;
+                subscriber.onNext(current.next());
 
-                ((Buffer) buffer).position(0);
-                buffer.get(line, 0, read);
-                line[line.length - 1] = '\0';
+                if (emitted == rows) {
+                    subscriber.onComplete();
+                }
+            }
+        }
 
-                json.put(header.next(), DataTypes.parseBytes(line));
+        /**
+         * @return the next chunk to emit if it is converted, otherwise null. When the import
+         * is not ordered any converted chunk is emitted.
+         */
+        private CompletableFuture<List<JsonObject>> next() {
+            if (ordered) {
+                CompletableFuture<List<JsonObject>> next = pending.peek();
+                return (next != null && next.isDone()) ? next : null;
             } else {
-                // skip parsing the content - just verify the format.
-                header.next();
+                return pending.stream().filter(CompletableFuture::isDone).findFirst().orElse(null);
+            }
+        }
+
+        private void waitForChunk() {
+            if (!waiting && !pending.isEmpty()) {
+                waiting = true;
+                CompletableFuture<?> chunk = (ordered) ? pending.peek() :
+                        CompletableFuture.anyOf(pending.toArray(new CompletableFuture[0]));
+
+                chunk.whenComplete((result, e) -> {
+                    Context context = this.context;
+
+                    if (context == null) {
+                        resume();
+                    } else {
+                        context.runOnContext(v -> resume());
+                    }
+                });
+            }
+        }
+
+        private synchronized void resume() {
+            waiting = false;
+            drain();
+        }
+
+        private void submit() {
+            while (submitted < chunks.size() && pending.size() < window && !cancelled) {
+                Chunk chunk = chunks.get(submitted++);
+                pending.add(CompletableFuture.supplyAsync(() -> convert(chunk), getPool()));
+            }
+        }
+
+        private List<JsonObject> convert(Chunk chunk) {
+            Cursor cursor = new Cursor(chunk.start, fileSize, chunk.row);
+            List<JsonObject> list = new ArrayList<>(chunk.rows);
+
+            for (int i = 0; i < chunk.rows; i++) {
+                JsonObject json = new JsonObject();
+                cursor.readRow(json);
+                list.add(json);
             }
-            ((Buffer) buffer).clear();
+            return list;
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            pending.forEach(future -> future.cancel(false));
+            pending.clear();
         }
     }
 
-    private JsonObject readRow() {
-        // reset header.
-        header = headers.fieldNames().iterator();
+    /**
+     * A range of rows that starts at the given offset.
+     */
+    private static class Chunk {
+        private long start;
+        private int rows;
+        private int row;
 
-        AtomicInteger columnsRead = new AtomicInteger(0);
-        JsonObject json = headers.copy();
-        boolean quoted = false;
-        boolean done = false;
+        Chunk(long start) {
+            this.start = start;
+        }
+    }
 
-        for (long i = index; i < fileSize && !done; i++) {
-            byte current = get();
+    /**
+     * Reads rows from the mapped file, each thread uses its own cursor.
+     */
+    private class Cursor {
+        private ByteBuffer[] pages = new ByteBuffer[maps.length];
+        private ColumnType[] profile;
+        private long runStart = -1;
+        private long runEnd;
+        private int fieldOffset;
+        private int fieldLength;
+        private long index;
+        private long end;
+        private long row;
+
+        /**
+         * @param start the offset of the first row to read.
+         * @param end   the offset to stop reading at.
+         * @param row   the number of rows before the first row, used for error reporting.
+         */
+        Cursor(long start, long end, long row) {
+            this.index = start;
+            this.end = end;
+            this.row = row + 1; // the header row.
+
+            // the mapped buffers are shared: use a view of each to copy from.
+            for (int i = 0; i < maps.length; i++) {
+                pages[i] = maps[i].duplicate();
+            }
+        }
 
-            if (i == fileSize - 1) {
-                // file fully read.
-                buffer.put(current);
-                process(columnsRead, json);
-                done = true;
+        /**
+         * Copies the given range into the buffer, the range must be within a single page.
+         *
+         * @param buffer the buffer to copy the bytes into.
+         * @param from   the offset to start copying from.
+         * @param to     the offset to stop copying at.
+         */
+        private void copy(ByteBuffer buffer, long from, long to) {
+            int page = (int) (from / MAP_SIZE);
+            long base = page * MAP_SIZE;
+            ByteBuffer source = pages[page];
+
+            ((Buffer) source).limit((int) (to - base)).position((int) (from - base));
+            buffer.put(source);
+        }
+
+        /**
+         * Adds a range of the file to the current field. If the field only consists of a single
+         * range it is parsed directly from the mapped file without being copied.
+         *
+         * @param buffer the buffer that holds the current field.
+         * @param from   the offset of the first byte in the range.
+         * @param to     the offset to end the range at, must be on the same page as the start.
+         */
+        private void append(ByteBuffer buffer, long from, long to) {
+            if (runStart == -1 && buffer.position() == 0) {
+                runStart = from;
+                runEnd = to;
             } else {
+                commit(buffer);
+                copy(buffer, from, to);
+            }
+        }
+
+        private void append(ByteBuffer buffer, byte current) {
+            commit(buffer);
+            buffer.put(current);
+        }
+
+        /**
+         * Copies the range of the file that has not yet been copied into the field buffer.
+         *
+         * @param buffer the buffer that holds the current field.
+         */
+        private void commit(ByteBuffer buffer) {
+            if (runStart != -1) {
+                copy(buffer, runStart, runEnd);
+                runStart = -1;
+            }
+        }
+
+        /**
+         * Validates all rows from the start of the cursor to its end.
+         *
+         * @return the rows read split into chunks of {@link #CHECKPOINT_INTERVAL} rows.
+         */
+        List<Chunk> validate() {
+            List<Chunk> chunks = new ArrayList<>();
+            Chunk chunk = new Chunk(index);
+
+            profile = new ColumnType[headers.length];
+            Arrays.fill(profile, ColumnType.EMPTY);
+
+            while (readRow(null)) {
+                if (++chunk.rows == CHECKPOINT_INTERVAL) {
+                    chunks.add(chunk);
+                    chunk = new Chunk(index);
+                }
+            }
+            if (chunk.rows > 0) {
+                chunks.add(chunk);
+            }
+            return chunks;
+        }
+
+        /**
+         * Reads the next row starting at the current index, empty lines are skipped.
+         *
+         * @param json the object to add the parsed values to, when null the row is only validated.
+         * @return true if a row was read, false if the end was reached.
+         */
+        boolean readRow(JsonObject json) {
+            ByteBuffer buffer = (ByteBuffer) ((Buffer) buffers.get()).clear();
+            runStart = -1;
+            int column = 0;
+            boolean quoted = false;
+            boolean empty = true;
+
+            while (index < end) {
+                long next = scan(index, end);
+
+                if (next > index) {
+                    // add all bytes up until the next token to the field.
+                    append(buffer, index, next);
+                    empty = false;
+                    index = next;
+                    continue;
+                }
+
+                byte current = get(index++);
+
                 switch (current) {
                     case TOKEN_NULL:
-                        // EOF call process.
-                        process(columnsRead, json);
-                        done = true;
+                        // EOF: stop reading any further.
+                        index = end;
                         break;
                     case TOKEN_CR:
                         // skip CR characters.
                         break;
                     case TOKEN_LF:
-                        // ignore empty lines.
-                        if (buffer.position() > 0) {
-                            // final header is being read and EOL appears.
-                            if (columnsRead.get() == headers.size() - 1) {
-                                process(columnsRead, json);
-                                done = true;
-                                break;
-                            } else {
-                                throw new ColumnsHeadersMismatchException(columnsRead.get(), headers.size() - 1, row + 1);
-                            }
+                        if (quoted) {
+                            append(buffer, current);
+                        } else if (!empty) {
+                            endRow(buffer, column, json);
+                            return true;
                         }
+                        // ignore empty lines.
+                        break;
                     case TOKEN_QUOTE:
                         // toggle quoted to support commas within quotes.
                         quoted = !quoted;
+                        empty = false;
                         break;
                     case TOKEN_SEPARATOR:
+                        empty = false;
                         if (!quoted) {
-                            process(columnsRead, json);
+                            process(buffer, column++, json);
                             break;
                         }
                     default:
-                        // store the current token in the buffer until the column ends.
-                        buffer.put(current);
+                        // store the quoted separator in the buffer until the column ends.
+                        empty = false;
+                        append(buffer, current);
                 }
             }
-        }
 
-        if (!(columnsRead.get() == headers.size())) {
-            throw new ParserException(
-                    String.format("Error at row %d/%d, values (%d) does not match headers (%d).",
-                            row + 1, rows, columnsRead.get(), headers.size()));
-        } else {
-            row++;
+            if (empty) {
+                return false;
+            } else {
+                // file fully read.
+                endRow(buffer, column, json);
+                return true;
+            }
         }
 
-        // parse json object.
-        return json;
-    }
-
-    @Override
-    public int getNumberOfElements() {
-        return rows;
-    }
-
-    @Override
-    public void free() {
-        try {
-            file.close();
-        } catch (IOException e) {
-            logger.onError(e);
+        private void process(ByteBuffer buffer, int column, JsonObject json) {
+            if (column >= headers.length) {
+                throw new ColumnsHeadersMismatchException(column + 1, headers.length, row + 1);
+            } else {
+                if (json != null) {
+                    ByteBuffer source = field(buffer);
+                    ColumnType type = (types == null) ? null : types[column];
+                    json.put(headers[column], DataTypes.parseBytes(source, fieldOffset, fieldLength, type));
+                } else if (!DataTypes.isCompatible()) {
+                    // record the type of each column when validating.
+                    ByteBuffer source = field(buffer);
+                    profile[column] = profile[column].merge(DataTypes.detect(source, fieldOffset, fieldLength));
+                }
+                runStart = -1;
+                ((Buffer) buffer).clear();
+            }
         }
-    }
 
-    @Override
-    public void subscribe(Subscriber<? super JsonObject> subscriber) {
-        reset();
-        dryRun = false;
-        readRow();
-
-        subscriber.onSubscribe(new Subscription() {
-
-            @Override
-            public void request(long count) {
-                for (int i = 0; i < count && i < rows; i++) {
-                    JsonObject result = readRow();
-                    subscriber.onNext(result);
-
-                    if (row > rows) {
-                        subscriber.onComplete();
-                        break;
-                    }
-                }
+        /**
+         * Locates the current field, which is either a range of the mapped file or in the field buffer.
+         *
+         * @param buffer the buffer that holds the current field.
+         * @return the buffer that contains the field at {@link #fieldOffset} with {@link #fieldLength}.
+         */
+        private ByteBuffer field(ByteBuffer buffer) {
+            if (runStart != -1 && buffer.position() == 0) {
+                int page = (int) (runStart / MAP_SIZE);
+                fieldOffset = (int) (runStart - page * MAP_SIZE);
+                fieldLength = (int) (runEnd - runStart);
+                return maps[page];
+            } else {
+                commit(buffer);
+                fieldOffset = 0;
+                fieldLength = buffer.position();
+                return buffer;
             }
+        }
+
+        private void endRow(ByteBuffer buffer, int column, JsonObject json) {
+            process(buffer, column, json);
 
-            @Override
-            public void cancel() {
-                // send no more items!
+            if (column + 1 != headers.length) {
+                throw new ParserException(
+                        String.format("Error at row %d, values (%d) does not match headers (%d).",
+                                row + 1, column + 1, headers.length));
+            } else {
+                row++;
             }
-        });
+        }
     }
 }
@@ -0,0 +1,426 @@
+package com.codingchili.excelastic.model;
+
+import com.codingchili.excelastic.logging.ApplicationLogger;
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * Parses CSV rows incrementally as the bytes are read from a stream, for example the
+ * body of an upload request. Rows are parsed when they are requested by the subscriber.
+ * <p>
+ * The stream is paused when more than {@link #HIGH_WATER_MARK} bytes are waiting to be
+ * parsed and resumed when the subscriber requests more rows, so that an upload is only
+ * read as fast as it can be indexed. The file is not validated before the import starts,
+ * an invalid row fails the import after the previous rows have been indexed.
+ */
+public class CSVStreamParser implements FileParser {
+    private static final int HIGH_WATER_MARK = 4 * 1024 * 1024;
+    private static final byte TOKEN_NULL = '\0';
+    private static final byte TOKEN_CR = '\r';
+    private static final byte TOKEN_LF = '\n';
+    private static final byte TOKEN_QUOTE = '\"';
+    private static final byte TOKEN_SEPARATOR = ',';
+
+    private ApplicationLogger logger = new ApplicationLogger(getClass());
+    private final Context context;
+    private final ReadStream<Buffer> stream;
+    private final long length;
+    private Subscriber<? super JsonObject> subscriber;
+    private Throwable error;
+    private String[] headers;
+    private String fileName;
+    private byte[] data = new byte[65536];
+    private ByteBuffer view = ByteBuffer.wrap(data);
+    private byte[] field = new byte[1024];
+    private ByteBuffer fieldView = ByteBuffer.wrap(field);
+    private int fieldLength;
+    private int runStart = -1;
+    private int runEnd;
+    private long shifted = 0;
+    private int position = 0;
+    private int limit = 0;
+    private long demand = 0;
+    private boolean paused = false;
+    private boolean ended = false;
+    private boolean done = false;
+    private volatile long consumed = 0;
+    private volatile int rows = 0;
+
+    /**
+     * @param context the context the stream is read on, rows are parsed on the same context.
+     * @param stream  the stream to read the bytes of the file from, the stream is paused until
+     *                rows are requested.
+     * @param length  the number of bytes in the stream if known, used to report progress.
+     */
+    public CSVStreamParser(Context context, ReadStream<Buffer> stream, long length) {
+        this.context = context;
+        this.stream = stream;
+        this.length = length;
+
+        pause();
+        stream.handler(this::onData);
+        stream.endHandler(end -> {
+            ended = true;
+            drain();
+        });
+        stream.exceptionHandler(e -> {
+            error = e;
+            drain();
+        });
+    }
+
+    @Override
+    public void setFileData(String _unused, int offset, String fileName) {
+        // the data is read from the stream.
+        this.fileName = fileName;
+    }
+
+    @Override
+    public Set<String> getSupportedFileExtensions() {
+        return new HashSet<>(Collections.singletonList(".csv"));
+    }
+
+    /**
+     * The rows are validated as they are parsed from the stream.
+     */
+    @Override
+    public void initialize() {
+        logger.parsingFile(fileName, 0);
+    }
+
+    /**
+     * @return the number of rows that was parsed so far.
+     */
+    @Override
+    public int getNumberOfElements() {
+        return rows;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
+
+    /**
+     * @param items the number of rows that has been imported.
+     * @return the progress estimated by the part of the stream that is parsed, zero if
+     * the length of the stream is not known.
+     */
+    @Override
+    public float getProgress(int items) {
+        if (length > 0 && rows > 0) {
+            return Math.min(consumed * 100.0f / length, 100.0f) * Math.min(items * 1.0f / rows, 1.0f);
+        } else {
+            return 0.0f;
+        }
+    }
+
+    /**
+     * @return the columns are not profiled, the type is detected for each value.
+     */
+    @Override
+    public Map<String, ColumnType> getColumnTypes() {
+        return new LinkedHashMap<>();
+    }
+
+    /**
+     * Discards the rest of the stream if the import has failed.
+     */
+    @Override
+    public void free() {
+        context.runOnContext(v -> {
+            done = true;
+            resume();
+        });
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super JsonObject> subscriber) {
+        this.subscriber = subscriber;
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long count) {
+                // the subscriber may request rows from another context.
+                context.runOnContext(v -> {
+                    demand += count;
+                    drain();
+                });
+            }
+
+            @Override
+            public void cancel() {
+                free();
+            }
+        });
+    }
+
+    private void onData(Buffer buffer) {
+        if (done) {
+            // the remaining bytes are discarded when the import is cancelled or failed.
+            return;
+        }
+        ensure(buffer.length());
+        buffer.getBytes(data, limit);
+        limit += buffer.length();
+
+        if (limit - position >= HIGH_WATER_MARK) {
+            pause();
+        }
+        drain();
+    }
+
+    /**
+     * Emits rows while there is demand and complete rows in the buffer. Resumes the stream
+     * when more bytes are needed and completes the subscriber at the end of the stream.
+     */
+    private void drain() {
+        if (done || subscriber == null) {
+            return;
+        }
+        try {
+            if (error != null) {
+                throw error;
+            }
+            boolean incomplete = false;
+
+            while (demand > 0 || headers == null) {
+                JsonObject json = (headers == null) ? null : new JsonObject();
+                int end = (json == null) ? readHeaders() : readRow(json);
+
+                if (end == -1) {
+                    incomplete = true;
+                    break;
+                }
+                position = end;
+
+                if (json != null) {
+                    rows++;
+                    demand--;
+                    subscriber.onNext(json);
+                }
+            }
+
+            consumed = shifted + position;
+
+            if (ended && position == limit) {
+                done = true;
+                resume();
+                logger.parsedFile(rows, fileName);
+                subscriber.onComplete();
+            } else if (incomplete || limit - position < HIGH_WATER_MARK) {
+                // resume if a row is incomplete, even if it does not fit below the high water mark.
+                resume();
+            }
+        } catch (Throwable e) {
+            done = true;
+            resume();
+            subscriber.onError(e);
+        }
+    }
+
+    /**
+     * Reads the header row as text, the headers are named by {@link CSVParser#getHeaders(String)}.
+     *
+     * @return the index after the end of the header row, or -1 if the row is not complete.
+     */
+    private int readHeaders() {
+        for (int index = position; index < limit; index++) {
+            if (data[index] == TOKEN_LF) {
+                headers = CSVParser.getHeaders(new String(data, position, index - position, StandardCharsets.UTF_8));
+                return index + 1;
+            }
+        }
+        if (ended) {
+            headers = CSVParser.getHeaders(new String(data, position, limit - position, StandardCharsets.UTF_8));
+            return limit;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the next row starting at the current position, empty lines are skipped.
+     *
+     * @param json the object to add the values to.
+     * @return the index after the end of the row, or -1 if the row is not complete.
+     */
+    private int readRow(JsonObject json) {
+        boolean quoted = false;
+        boolean empty = true;
+        int column = 0;
+        int index = position;
+        runStart = -1;
+        fieldLength = 0;
+
+        while (index < limit) {
+            int next = CSVTokenScanner.next(view, index, limit);
+
+            if (next > index) {
+                // add all bytes up until the next token to the field.
+                append(index, next);
+                empty = false;
+                index = next;
+                continue;
+            }
+
+            byte current = data[index++];
+
+            switch (current) {
+                case TOKEN_NULL:
+                    // EOF: discard the rest of the stream.
+                    limit = index - 1;
+                    ended = true;
+                    break;
+                case TOKEN_CR:
+                    // skip CR characters.
+                    break;
+                case TOKEN_LF:
+                    if (quoted) {
+                        append(current);
+                    } else if (!empty) {
+                        endRow(json, column);
+                        return index;
+                    } else {
+                        // ignore empty lines.
+                        position = index;
+                    }
+                    break;
+                case TOKEN_QUOTE:
+                    // toggle quoted to support commas within quotes.
+                    quoted = !quoted;
+                    empty = false;
+                    break;
+                case TOKEN_SEPARATOR:
+                    empty = false;
+                    if (!quoted) {
+                        process(json, column++);
+                        break;
+                    }
+                default:
+                    // store the quoted separator in the field until the column ends.
+                    empty = false;
+                    append(current);
+            }
+        }
+
+        if (ended && empty) {
+            position = limit;
+        } else if (ended) {
+            // the last row does not end with a line feed.
+            endRow(json, column);
+            return limit;
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a range of the buffer to the current field. If the field only consists of a single
+     * range it is parsed directly from the buffer without being copied.
+     */
+    private void append(int from, int to) {
+        if (runStart == -1 && fieldLength == 0) {
+            runStart = from;
+            runEnd = to;
+        } else {
+            commit();
+            copy(from, to);
+        }
+    }
+
+    private void append(byte current) {
+        commit();
+        ensureField(1);
+        field[fieldLength++] = current;
+    }
+
+    /**
+     * Copies the range of the buffer that has not yet been copied into the field.
+     */
+    private void commit() {
+        if (runStart != -1) {
+            copy(runStart, runEnd);
+            runStart = -1;
+        }
+    }
+
+    private void copy(int from, int to) {
+        ensureField(to - from);
+        System.arraycopy(data, from, field, fieldLength, to - from);
+        fieldLength += to - from;
+    }
+
+    private void ensureField(int required) {
+        if (fieldLength + required > field.length) {
+            field = Arrays.copyOf(field, Math.max(field.length * 2, fieldLength + required));
+            fieldView = ByteBuffer.wrap(field);
+        }
+    }
+
+    private void process(JsonObject json, int column) {
+        Object value;
+
+        if (runStart != -1 && fieldLength == 0) {
+            value = DataTypes.parseBytes(view, runStart, runEnd - runStart);
+        } else {
+            commit();
+            value = DataTypes.parseBytes(fieldView, 0, fieldLength);
+        }
+        runStart = -1;
+        fieldLength = 0;
+
+        if (column < headers.length) {
+            json.put(headers[column], value);
+        } else {
+            throw new ColumnsHeadersMismatchException(column + 1, headers.length, rows + 2);
+        }
+    }
+
+    private void endRow(JsonObject json, int column) {
+        process(json, column);
+
+        if (column + 1 != headers.length) {
+            throw new ParserException(
+                    String.format("Error at row %d, values (%d) does not match headers (%d).",
+                            rows + 2, column + 1, headers.length));
+        }
+    }
+
+    private void ensure(int required) {
+        if (limit + required > data.length) {
+            // move the unparsed bytes to the start of the buffer before growing it.
+            int remaining = limit - position;
+            byte[] target = (remaining + required > data.length) ?
+                    new byte[Math.max(data.length * 2, remaining + required)] : data;
+
+            System.arraycopy(data, position, target, 0, remaining);
+            shifted += position;
+            data = target;
+            view = ByteBuffer.wrap(data);
+            position = 0;
+            limit = remaining;
+        }
+    }
+
+    private void pause() {
+        if (!paused) {
+            paused = true;
+            stream.pause();
+        }
+    }
+
+    private void resume() {
+        if (paused && (!ended || done)) {
+            paused = false;
+            stream.resume();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.codingchili.excelastic.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * Finds CSV tokens in a buffer eight bytes at a time, by reading longs and testing
+ * all bytes in the word at once (SWAR). The buffer must use big endian byte order,
+ * which is the default for all byte buffers.
+ * <p>
+ * The scalar methods are used for the bytes at the end of a range that does not fill
+ * a whole word, they are also kept for comparison with the SWAR implementation.
+ */
+public class CSVTokenScanner {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW = 0x7F7F7F7F7F7F7F7FL;
+    private static final long SEPARATOR = ONES * ',';
+    private static final long QUOTE = ONES * '\"';
+    private static final long CR = ONES * '\r';
+    private static final long LF = ONES * '\n';
+
+    /**
+     * Finds the next token, tokens are separators, quotes, line feeds, carriage returns and null.
+     *
+     * @param buffer the buffer to search.
+     * @param from   the index to start searching from, inclusive.
+     * @param to     the index to stop searching at, exclusive.
+     * @return the index of the first token in the given range, or the end of the range if none.
+     */
+    public static int next(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long word = buffer.getLong(i);
+            long mask = zeros(word ^ SEPARATOR) | zeros(word ^ QUOTE) |
+                    zeros(word ^ LF) | zeros(word ^ CR) | zeros(word);
+
+            if (mask != 0) {
+                return i + (Long.numberOfLeadingZeros(mask) >>> 3);
+            }
+        }
+        return nextScalar(buffer, i, to);
+    }
+
+    /**
+     * Finds the next quote or null byte.
+     *
+     * @param buffer the buffer to search.
+     * @param from   the index to start searching from, inclusive.
+     * @param to     the index to stop searching at, exclusive.
+     * @return the index of the first quote or null byte in the given range, or the end of the range if none.
+     */
+    public static int nextQuote(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long word = buffer.getLong(i);
+            long mask = zeros(word ^ QUOTE) | zeros(word);
+
+            if (mask != 0) {
+                return i + (Long.numberOfLeadingZeros(mask) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            byte current = buffer.get(i);
+            if (current == '\"' || current == '\0') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Finds the next token one byte at a time.
+     *
+     * @param buffer the buffer to search.
+     * @param from   the index to start searching from, inclusive.
+     * @param to     the index to stop searching at, exclusive.
+     * @return the index of the first token in the given range, or the end of the range if none.
+     */
+    public static int nextScalar(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            switch (buffer.get(i)) {
+                case ',':
+                case '\"':
+                case '\n':
+                case '\r':
+                case '\0':
+                    return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * @param word the bytes to test.
+     * @return a word with the high bit set for each byte in the given word that is zero.
+     */
+    private static long zeros(long word) {
+        long low = (word & LOW) + LOW;
+        return ~(low | word | LOW);
+    }
+}
@@ -0,0 +1,80 @@
+package com.codingchili.excelastic.model;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * The data type of all values in a column, detected when a file is initialized.
+ * Columns that contain values of different types are imported as text, except for
+ * columns that mixes integers and floating points which are imported as floating points.
+ */
+public enum ColumnType {
+    EMPTY, BOOLEAN, LONG, DOUBLE, DATE, STRING;
+    private static final String TYPE = "type";
+
+    /**
+     * @param other the type of another value in the same column.
+     * @return the type that is able to represent values of both types.
+     */
+    public ColumnType merge(ColumnType other) {
+        if (this == other || other == EMPTY) {
+            return this;
+        } else if (this == EMPTY) {
+            return other;
+        } else if (isNumber() && other.isNumber()) {
+            return DOUBLE;
+        } else {
+            return STRING;
+        }
+    }
+
+    /**
+     * @return the elasticsearch mapping of a field with this type or null if the type is
+     * left to dynamic mapping. Text is mapped like dynamic mapping does, with a keyword field.
+     */
+    public JsonObject getMapping() {
+        switch (this) {
+            case BOOLEAN:
+                return new JsonObject().put(TYPE, "boolean");
+            case LONG:
+                return new JsonObject().put(TYPE, "long");
+            case DOUBLE:
+                return new JsonObject().put(TYPE, "double");
+            case DATE:
+                return new JsonObject().put(TYPE, "date");
+            case STRING:
+                return new JsonObject().put(TYPE, "text")
+                        .put("fields", new JsonObject().put("keyword", new JsonObject()
+                                .put(TYPE, "keyword")
+                                .put("ignore_above", 256)));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return true if the type is a long or a double.
+     */
+    public boolean isNumber() {
+        return this == LONG || this == DOUBLE;
+    }
+
+    /**
+     * @param value a value parsed by {@link DataTypes}.
+     * @return the type of the given value.
+     */
+    public static ColumnType of(Object value) {
+        if (value == null || "".equals(value)) {
+            return EMPTY;
+        } else if (value instanceof Boolean) {
+            return BOOLEAN;
+        } else if (value instanceof Long || value instanceof Integer) {
+            return LONG;
+        } else if (value instanceof Double) {
+            return DOUBLE;
+        } else {
+            return STRING;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.codingchili.excelastic.model;
 
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
 import java.io.IOException;
@@ -7,7 +8,9 @@ import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 import java.util.Optional;
 import java.util.logging.Logger;
 
@@ -18,7 +21,9 @@ import java.util.logging.Logger;
  */
 public class Configuration {
     public static final String INDEXING_ELASTICSEARCH = "bus.transactions";
+    public static final String INDEXING_LOCAL = "bus.transactions.local";
     private static final String CONFIGURATION_JSON = "configuration.json";
+    private static final int MEGABYTE = 1024 * 1024;
     private static int ELASTIC_PORT;
     private static String ELASTIC_HOST;
     private static String DEFAULT_INDEX;
@@ -27,6 +32,30 @@ public class Configuration {
     private static String BASIC_AUTH;
     private static boolean ELASTIC_TLS;
     private static boolean INDEX_LOCK;
+    private static boolean PARALLEL_PARSING;
+    private static boolean ORDERED_IMPORT;
+    private static int PARSER_THREADS;
+    private static boolean COMPATIBLE_TYPES;
+    private static int BULK_CONCURRENCY;
+    private static int BULK_MIN_MB;
+    private static int BULK_MAX_MB;
+    private static int HTTP_POOL_SIZE;
+    private static boolean HTTP_PIPELINING;
+    private static int BULK_GZIP_LEVEL;
+    private static String DEAD_LETTER_PATH;
+    private static List<String> ELASTIC_NODES;
+    private static boolean ELASTIC_SNIFFING;
+    private static String LOAD_BALANCING;
+    private static int INDEX_SHARDS;
+    private static int FORCE_MERGE_SEGMENTS;
+    private static boolean EXPLICIT_MAPPING;
+    private static int MAX_IMPORT_JOBS;
+    private static int MAX_PARSERS;
+    private static int PROGRESS_INTERVAL_MS;
+    private static boolean CLUSTER;
+    private static String CLUSTER_HOST;
+    private static boolean WEBSITE;
+    private static String UPLOAD_DIRECTORY;
 
     static {
         JsonObject configuration = getConfiguration();
@@ -38,6 +67,40 @@ public class Configuration {
         ELASTIC_TLS = configuration.getBoolean("elastic_tls", false);
         DEFAULT_INDEX = configuration.getString("default_index", generateDefaultIndex());
         INDEX_LOCK = configuration.getBoolean("index_lock", false);
+        PARALLEL_PARSING = configuration.getBoolean("parallel_parsing", false);
+        ORDERED_IMPORT = configuration.getBoolean("ordered_import", true);
+        PARSER_THREADS = configuration.getInteger("parser_threads", Runtime.getRuntime().availableProcessors());
+        COMPATIBLE_TYPES = configuration.getBoolean("compatible_types", false);
+        BULK_CONCURRENCY = configuration.getInteger("bulk_concurrency", 1);
+        BULK_MIN_MB = configuration.getInteger("bulk_min_mb", 5);
+        BULK_MAX_MB = configuration.getInteger("bulk_max_mb", 15);
+        HTTP_POOL_SIZE = configuration.getInteger("http_pool_size", 8);
+        HTTP_PIPELINING = configuration.getBoolean("http_pipelining", false);
+        BULK_GZIP_LEVEL = configuration.getInteger("bulk_gzip_level", 0);
+        DEAD_LETTER_PATH = configuration.getString("dead_letter_path", "dead-letters");
+        ELASTIC_NODES = getElasticNodes(configuration.getJsonArray("elastic_nodes", new JsonArray()));
+        ELASTIC_SNIFFING = configuration.getBoolean("elastic_sniffing", false);
+        LOAD_BALANCING = configuration.getString("load_balancing", "round_robin");
+        INDEX_SHARDS = configuration.getInteger("index_shards", 0);
+        FORCE_MERGE_SEGMENTS = configuration.getInteger("force_merge_segments", 0);
+        EXPLICIT_MAPPING = configuration.getBoolean("explicit_mapping", true);
+        MAX_IMPORT_JOBS = Math.max(configuration.getInteger("max_import_jobs", 2), 1);
+        MAX_PARSERS = Math.max(configuration.getInteger("max_parsers", 2), 1);
+        PROGRESS_INTERVAL_MS = Math.max(configuration.getInteger("progress_interval_ms", 250), 0);
+        CLUSTER = configuration.getBoolean("cluster", false);
+        CLUSTER_HOST = configuration.getString("cluster_host", "localhost");
+        WEBSITE = configuration.getBoolean("website", true);
+        UPLOAD_DIRECTORY = configuration.getString("upload_directory", "file-uploads");
+    }
+
+    private static List<String> getElasticNodes(JsonArray nodes) {
+        List<String> addresses = new ArrayList<>();
+        nodes.forEach(node -> addresses.add(node.toString()));
+
+        if (addresses.isEmpty()) {
+            addresses.add(ELASTIC_HOST + ":" + ELASTIC_PORT);
+        }
+        return addresses;
     }
 
     private static JsonObject getConfiguration() {
@@ -130,4 +193,184 @@ public class Configuration {
     public static boolean isIndexLocked() {
         return INDEX_LOCK;
     }
+
+    /**
+     * @return true if files should be parsed using multiple threads.
+     */
+    public static boolean isParallelParsing() {
+        return PARALLEL_PARSING;
+    }
+
+    /**
+     * @return true if rows must be imported in the same order as they appear in the file,
+     * when false parallel parsers may emit rows as soon as they are converted.
+     */
+    public static boolean isOrderedImport() {
+        return ORDERED_IMPORT;
+    }
+
+    /**
+     * @return the number of threads to use when parsing files in parallel.
+     */
+    public static int getParserThreads() {
+        return PARSER_THREADS;
+    }
+
+    /**
+     * @return true if data types should be detected like in previous versions, without
+     * support for negative numbers and exponents.
+     */
+    public static boolean isCompatibleTypes() {
+        return COMPATIBLE_TYPES;
+    }
+
+    /**
+     * @return the maximum number of bulk requests that may be in flight at the same time
+     * for each import.
+     */
+    public static int getBulkConcurrency() {
+        return Math.max(BULK_CONCURRENCY, 1);
+    }
+
+    /**
+     * @return the minimum size of a bulk request in bytes, bulk requests starts at this size.
+     */
+    public static int getBulkMinBytes() {
+        return Math.max(BULK_MIN_MB, 1) * MEGABYTE;
+    }
+
+    /**
+     * @return the maximum size of a bulk request in bytes.
+     */
+    public static int getBulkMaxBytes() {
+        return Math.max(BULK_MAX_MB * MEGABYTE, getBulkMinBytes());
+    }
+
+    /**
+     * @return the maximum number of connections to elasticsearch that are kept open by the writer.
+     */
+    public static int getHttpPoolSize() {
+        return Math.max(HTTP_POOL_SIZE, 1);
+    }
+
+    /**
+     * @return true if requests to elasticsearch may be pipelined on the same connection.
+     */
+    public static boolean isHttpPipelining() {
+        return HTTP_PIPELINING;
+    }
+
+    /**
+     * @return the gzip compression level of bulk requests from 1 to 9, 0 if bulk requests
+     * are not compressed.
+     */
+    public static int getBulkGzipLevel() {
+        return Math.min(Math.max(BULK_GZIP_LEVEL, 0), 9);
+    }
+
+    /**
+     * @return the directory to write items that could not be indexed to.
+     */
+    public static String getDeadLetterPath() {
+        return DEAD_LETTER_PATH;
+    }
+
+    /**
+     * @return the addresses of the elasticsearch nodes as host:port, defaults to the
+     * elastic host and port if no nodes are configured.
+     */
+    public static List<String> getElasticNodes() {
+        return ELASTIC_NODES;
+    }
+
+    /**
+     * @return true if more nodes should be discovered from the nodes info api of the cluster.
+     */
+    public static boolean isElasticSniffing() {
+        return ELASTIC_SNIFFING;
+    }
+
+    /**
+     * @return the strategy to select the node for each request with.
+     */
+    public static ElasticNodes.Strategy getLoadBalancing() {
+        return ElasticNodes.Strategy.valueOf(LOAD_BALANCING.toUpperCase());
+    }
+
+    /**
+     * @return the number of shards of indexes that are created for fast loading, 0 to use
+     * the default of the cluster.
+     */
+    public static int getIndexShards() {
+        return INDEX_SHARDS;
+    }
+
+    /**
+     * @return the number of segments to force merge an index into after fast loading, 0 if
+     * the index is not force merged.
+     */
+    public static int getForceMergeSegments() {
+        return FORCE_MERGE_SEGMENTS;
+    }
+
+    /**
+     * @return true if a mapping is created from the detected column types before importing.
+     */
+    public static boolean isExplicitMapping() {
+        return EXPLICIT_MAPPING;
+    }
+
+    /**
+     * @return the maximum number of imports that are parsed or indexed at the same time,
+     * other imports are queued.
+     */
+    public static int getMaxImportJobs() {
+        return MAX_IMPORT_JOBS;
+    }
+
+    /**
+     * @return the number of worker threads that files are parsed on.
+     */
+    public static int getMaxParsers() {
+        return MAX_PARSERS;
+    }
+
+    /**
+     * @return the minimum number of milliseconds between progress updates of an import,
+     * updates within the interval are coalesced into the latest.
+     */
+    public static int getProgressIntervalMs() {
+        return PROGRESS_INTERVAL_MS;
+    }
+
+    /**
+     * @return true if the event bus is clustered with the other nodes on the network, imports
+     * of files are then indexed by any node in the cluster.
+     */
+    public static boolean isClustered() {
+        return CLUSTER;
+    }
+
+    /**
+     * @return the address that the other nodes in the cluster connect to this node on.
+     */
+    public static String getClusterHost() {
+        return CLUSTER_HOST;
+    }
+
+    /**
+     * @return true if the website is started, when false the node only indexes imports
+     * from other nodes in the cluster.
+     */
+    public static boolean isWebsite() {
+        return WEBSITE;
+    }
+
+    /**
+     * @return the directory that uploaded files are stored in, when clustered the directory
+     * must be shared by all nodes.
+     */
+    public static String getUploadDirectory() {
+        return UPLOAD_DIRECTORY;
+    }
 }
@@ -1,27 +1,162 @@
 package com.codingchili.excelastic.model;
 
-import java.util.function.Predicate;
-import java.util.regex.Pattern;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
 
 /**
  * Attempts to determine the data type based on the given value.
  * <p>
  * The supported data types are,
- * Numbers - formatted into a Long.
- * Floating points - formatted into a double.
+ * Numbers - formatted into a Long, may be negative.
+ * Floating points - formatted into a double, may be negative and use an exponent.
  * Booleans - parsed into a Boolean.
+ * <p>
+ * The type is detected and the value is parsed in a single pass over the characters.
+ * In compatible mode negative numbers and exponents are not detected and integers
+ * that does not fit in a long fails with a {@link NumberFormatException}.
  */
 public class DataTypes {
-    private static final Predicate<String> floatPattern = Pattern.compile("^[0-9]+\\.[0-9]+$").asPredicate();
-    private static final Predicate<String> numberPattern = Pattern.compile("^[0-9]+$").asPredicate();
-    private static final Predicate<String> boolPattern = Pattern.compile("^(true|false)$").asPredicate();
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final int MAX_LONG_DIGITS = 18;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[256]);
+    private static boolean compatible = Configuration.isCompatibleTypes();
+
+    /**
+     * @param compatible if true only the data types detected by previous versions
+     *                   are supported, see {@link DataTypes}.
+     */
+    public static void setCompatible(boolean compatible) {
+        DataTypes.compatible = compatible;
+    }
 
     /**
      * @param data a byte array to identify the type of and format into its matching java-type.
      * @return the given value parsed as a supported java type, defaults to string.
      */
     public static Object parseBytes(byte[] data) {
-        return parseString(new String(data).trim());
+        return parseBytes(ByteBuffer.wrap(data), 0, data.length);
+    }
+
+    /**
+     * @return true if only the data types detected by previous versions are supported,
+     * in this mode column types are not used and the type is detected for each value.
+     */
+    public static boolean isCompatible() {
+        return compatible;
+    }
+
+    /**
+     * Parses the value directly from the given range of the buffer, a string is only created
+     * for values that are not numbers or booleans. Whitespace is trimmed and text is decoded as UTF-8.
+     *
+     * @param buffer the buffer that contains the value, this may be a mapped buffer.
+     * @param offset the index of the first byte of the value.
+     * @param length the number of bytes in the value.
+     * @return the given value parsed as a supported java type, defaults to string.
+     */
+    public static Object parseBytes(ByteBuffer buffer, int offset, int length) {
+        return parseBytes(buffer, offset, length, null);
+    }
+
+    /**
+     * Parses the value using the type of its column, the type is not detected.
+     *
+     * @param buffer the buffer that contains the value, this may be a mapped buffer.
+     * @param offset the index of the first byte of the value.
+     * @param length the number of bytes in the value.
+     * @param type   the type of the column the value is in, if null the type is detected.
+     * @return the given value parsed as the given type.
+     */
+    public static Object parseBytes(ByteBuffer buffer, int offset, int length, ColumnType type) {
+        int start = trimStart(buffer, offset, offset + length);
+        int end = trimEnd(buffer, start, offset + length);
+
+        if (start == end) {
+            return "";
+        }
+
+        Supplier<String> text = () -> text(buffer, start, end);
+        Object value = null;
+
+        if (type == ColumnType.STRING || type == ColumnType.DATE) {
+            return text.get();
+        } else if (type == ColumnType.LONG) {
+            value = parseLong(buffer, start, end);
+        } else if (type == ColumnType.BOOLEAN) {
+            value = parseBoolean(buffer::get, start, end);
+        }
+
+        if (value == null) {
+            value = classify(buffer::get, start, end, text);
+        }
+
+        if (type == ColumnType.DOUBLE && value instanceof Number) {
+            value = ((Number) value).doubleValue();
+        }
+        return (value == null) ? text.get() : value;
+    }
+
+    /**
+     * Detects the type of the value without creating a string for text values.
+     *
+     * @param buffer the buffer that contains the value, this may be a mapped buffer.
+     * @param offset the index of the first byte of the value.
+     * @param length the number of bytes in the value.
+     * @return the type of the value.
+     */
+    public static ColumnType detect(ByteBuffer buffer, int offset, int length) {
+        int start = trimStart(buffer, offset, offset + length);
+        int end = trimEnd(buffer, start, offset + length);
+
+        if (start == end) {
+            return ColumnType.EMPTY;
+        } else {
+            Object value = classify(buffer::get, start, end, () -> text(buffer, start, end));
+            return (value == null) ? ColumnType.STRING : ColumnType.of(value);
+        }
+    }
+
+    private static int trimStart(ByteBuffer buffer, int start, int end) {
+        while (start < end && (buffer.get(start) & 0xff) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(ByteBuffer buffer, int start, int end) {
+        while (end > start && (buffer.get(end - 1) & 0xff) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Parses an integer without detecting other types.
+     *
+     * @return the parsed value or null if the value is not an integer that fits in a long.
+     */
+    private static Long parseLong(ByteBuffer buffer, int start, int end) {
+        boolean negative = (buffer.get(start) == '-');
+        int i = (negative) ? start + 1 : start;
+
+        if (i == end || end - i > MAX_LONG_DIGITS) {
+            return null;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            byte current = buffer.get(i);
+            if (current < '0' || current > '9') {
+                return null;
+            }
+            value = value * 10 + (current - '0');
+        }
+        return (negative) ? -value : value;
     }
 
     /**
@@ -30,20 +165,150 @@ public class DataTypes {
      */
     public static Object parseString(String value) {
         if (value.length() > 0) {
-            if (numberPattern.test(value)) {
-                return Long.parseLong(value);
-            } else if (floatPattern.test(value)) {
-                return Double.parseDouble(value);
-            } else if (boolPattern.test(value)) {
-                return Boolean.parseBoolean(value);
-            } else {
-                return value;
-            }
+            Object parsed = classify(value::charAt, 0, value.length(), () -> value);
+            return (parsed == null) ? value : parsed;
         } else {
             return value;
         }
     }
 
+    /**
+     * Detects the type of the value and parses it in a single pass.
+     *
+     * @param source returns the character at the given index.
+     * @param start  the index of the first character.
+     * @param end    the index after the last character.
+     * @param text   supplies the value as text, used when the value cannot be parsed exactly from the digits.
+     * @return the parsed value or null if the value is text.
+     */
+    private static Object classify(IntUnaryOperator source, int start, int end, Supplier<String> text) {
+        int i = start;
+        int current = source.applyAsInt(i);
+        boolean negative = false;
+
+        if (current == '-' && !compatible) {
+            negative = true;
+            current = (++i < end) ? source.applyAsInt(i) : 0;
+        }
+
+        if (current < '0' || current > '9') {
+            return (negative) ? null : parseBoolean(source, start, end);
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        for (; i < end && (current = source.applyAsInt(i)) >= '0' && current <= '9'; i++) {
+            mantissa = mantissa * 10 + (current - '0');
+            digits++;
+        }
+
+        if (i == end) {
+            return parseLong(negative, mantissa, digits, text);
+        }
+
+        int exponent = 0;
+        if (current == '.') {
+            int fraction = 0;
+            for (i++; i < end && (current = source.applyAsInt(i)) >= '0' && current <= '9'; i++) {
+                mantissa = mantissa * 10 + (current - '0');
+                fraction++;
+            }
+            if (fraction == 0) {
+                return null;
+            }
+            digits += fraction;
+            exponent -= fraction;
+        }
+
+        if (i < end && (current == 'e' || current == 'E') && !compatible) {
+            int power = 0;
+            int powerDigits = 0;
+            boolean negativePower = false;
+
+            if (++i < end && ((current = source.applyAsInt(i)) == '-' || current == '+')) {
+                negativePower = (current == '-');
+                i++;
+            }
+            for (; i < end && (current = source.applyAsInt(i)) >= '0' && current <= '9'; i++) {
+                power = Math.min(power * 10 + (current - '0'), 10000);
+                powerDigits++;
+            }
+            if (powerDigits == 0) {
+                return null;
+            }
+            exponent += (negativePower) ? -power : power;
+        }
+
+        if (i != end) {
+            return null;
+        } else if (digits <= MAX_EXACT_DIGITS && Math.abs(exponent) < POWERS_OF_TEN.length) {
+            // both the digits and the power of ten are exact: the result is correctly rounded.
+            double value = (exponent < 0) ?
+                    mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return (negative) ? -value : value;
+        } else {
+            double value = Double.parseDouble(text.get());
+            // keep values that are out of range as text, infinity is not valid json.
+            return (Double.isInfinite(value)) ? null : value;
+        }
+    }
+
+    private static Object parseLong(boolean negative, long mantissa, int digits, Supplier<String> text) {
+        if (digits <= MAX_LONG_DIGITS) {
+            return (negative) ? -mantissa : mantissa;
+        } else if (compatible) {
+            // may overflow: let Long handle it.
+            return Long.parseLong(text.get());
+        } else {
+            try {
+                return Long.parseLong(text.get());
+            } catch (NumberFormatException e) {
+                // too large to be a long: keep the value as text to not lose precision.
+                return null;
+            }
+        }
+    }
+
+    private static Object parseBoolean(IntUnaryOperator source, int start, int end) {
+        if (equals(source, start, end, "true")) {
+            return true;
+        } else if (equals(source, start, end, "false")) {
+            return false;
+        } else {
+            return null;
+        }
+    }
+
+    private static boolean equals(IntUnaryOperator source, int start, int end, String value) {
+        if (end - start != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (source.applyAsInt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String text(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = scratch.get();
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+                scratch.set(bytes);
+            }
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
     /**
      * @param numericCellValue parameter to convert to either double or int.
      * @return an integer or float object, depending on if the given param has decimal value > 0.
@@ -0,0 +1,97 @@
+package com.codingchili.excelastic.model;
+
+import com.codingchili.excelastic.logging.ApplicationLogger;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * Writes items that could not be indexed to a file, one json object per line.
+ * <p>
+ * The file is created when the first item is flushed, items are buffered until they are
+ * flushed and then appended on a worker thread in the order that they are written.
+ */
+public class DeadLetterFile {
+    private static final String EXTENSION = ".json";
+    private ApplicationLogger logger = new ApplicationLogger(getClass());
+    private final Vertx vertx;
+    private final Path path;
+    private Buffer pending = Buffer.buffer();
+    private int count = 0;
+
+    /**
+     * @param vertx the vertx instance to write the file on.
+     * @param index the name of the index that the items was imported into, characters that
+     *              are not allowed in index names are replaced to keep the file in the directory.
+     */
+    public DeadLetterFile(Vertx vertx, String index) {
+        String name = index.toLowerCase().replaceAll("[^a-z0-9_\\-]+", "_");
+        this.vertx = vertx;
+        this.path = Paths.get(Configuration.getDeadLetterPath(), name + "-" + System.currentTimeMillis() + EXTENSION);
+    }
+
+    /**
+     * Buffers an item until the next call to {@link #flush()}.
+     *
+     * @param item   the item that could not be indexed.
+     * @param status the http status of the item or the request.
+     * @param error  a description of why the item was not indexed.
+     */
+    public void write(JsonObject item, int status, String error) {
+        pending.appendBuffer(new JsonObject()
+                .put("status", status)
+                .put("error", error)
+                .put("item", item)
+                .toBuffer())
+                .appendString("\n");
+        count++;
+    }
+
+    /**
+     * Appends the buffered items to the file with a single write, called once for the
+     * failed items of each bulk request.
+     */
+    public void flush() {
+        if (pending.length() == 0) {
+            return;
+        }
+        Buffer lines = pending;
+        pending = Buffer.buffer();
+
+        vertx.executeBlocking(blocking -> {
+            try {
+                Files.createDirectories(path.getParent());
+                Files.write(path, lines.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                blocking.complete();
+            } catch (IOException e) {
+                blocking.fail(e);
+            }
+        }, true, done -> {
+            if (done.failed()) {
+                logger.onError(done.cause());
+            }
+        });
+    }
+
+    /**
+     * @return the number of items that has been written.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the path of the file, the file only exists if any items has been written.
+     */
+    public Path getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,193 @@
+package com.codingchili.excelastic.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * The elasticsearch nodes that requests are distributed over.
+ * <p>
+ * Nodes that fails the health check are not used until they are available again,
+ * if no node is available requests are distributed over all nodes.
+ */
+public class ElasticNodes {
+    private final List<Node> nodes = new ArrayList<>();
+    private final Strategy strategy;
+    private int next = 0;
+
+    /**
+     * The strategy used to select the node for the next request.
+     */
+    public enum Strategy {
+        /**
+         * Selects the nodes in turn.
+         */
+        ROUND_ROBIN,
+        /**
+         * Selects the node with the least number of requests in flight.
+         */
+        LEAST_OUTSTANDING
+    }
+
+    /**
+     * @param addresses the addresses of the nodes as host:port, if the port is
+     *                  missing the configured elasticsearch port is used.
+     * @param strategy  the strategy used to select the node for each request.
+     */
+    public ElasticNodes(List<String> addresses, Strategy strategy) {
+        this.strategy = strategy;
+        addresses.forEach(address -> nodes.add(parse(address)));
+    }
+
+    /**
+     * @return the node to send the next request to.
+     */
+    public Node next() {
+        List<Node> candidates = getAvailable();
+
+        if (candidates.isEmpty()) {
+            candidates = nodes;
+        }
+
+        if (strategy == Strategy.LEAST_OUTSTANDING) {
+            Node selected = candidates.get(Math.floorMod(next++, candidates.size()));
+            for (Node node : candidates) {
+                if (node.outstanding < selected.outstanding) {
+                    selected = node;
+                }
+            }
+            return selected;
+        } else {
+            return candidates.get(Math.floorMod(next++, candidates.size()));
+        }
+    }
+
+    /**
+     * Adds a node that was discovered by sniffing, the node is not used until it has
+     * passed a health check.
+     *
+     * @param address the address of the node as host:port.
+     * @return the added node or empty if the node is already known.
+     */
+    public Optional<Node> add(String address) {
+        Node node = parse(address);
+
+        for (Node existing : nodes) {
+            if (existing.toString().equals(node.toString())) {
+                return Optional.empty();
+            }
+        }
+        node.available = false;
+        nodes.add(node);
+        return Optional.of(node);
+    }
+
+    /**
+     * @return all nodes including nodes that are not available.
+     */
+    public List<Node> getNodes() {
+        return new ArrayList<>(nodes);
+    }
+
+    /**
+     * @return the nodes that passed the last health check.
+     */
+    public List<Node> getAvailable() {
+        List<Node> available = new ArrayList<>();
+        for (Node node : nodes) {
+            if (node.available) {
+                available.add(node);
+            }
+        }
+        return available;
+    }
+
+    /**
+     * @return true if any node passed the last health check.
+     */
+    public boolean isAvailable() {
+        return !getAvailable().isEmpty();
+    }
+
+    private static Node parse(String address) {
+        int separator = address.lastIndexOf(':');
+        // ipv6 addresses without brackets contains multiple separators and no port.
+        boolean ipv6 = !address.startsWith("[") && address.indexOf(':') != separator;
+
+        // ipv6 addresses contains separators: only use a separator after the closing bracket.
+        if (separator > 0 && !ipv6 && separator > address.lastIndexOf(']')) {
+            return new Node(getHost(address.substring(0, separator)),
+                    Integer.parseInt(address.substring(separator + 1)));
+        } else {
+            return new Node(getHost(address), Configuration.getElasticPort());
+        }
+    }
+
+    private static String getHost(String host) {
+        return (host.startsWith("[") && host.endsWith("]")) ? host.substring(1, host.length() - 1) : host;
+    }
+
+    /**
+     * An elasticsearch node that requests can be sent to.
+     */
+    public static class Node {
+        private final String host;
+        private final int port;
+        private boolean available = true;
+        private int outstanding = 0;
+
+        Node(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        /**
+         * @return the host of the node.
+         */
+        public String getHost() {
+            return host;
+        }
+
+        /**
+         * @return the http port of the node.
+         */
+        public int getPort() {
+            return port;
+        }
+
+        /**
+         * @return true if the node passed the last health check.
+         */
+        public boolean isAvailable() {
+            return available;
+        }
+
+        /**
+         * @param available the result of the last health check.
+         */
+        public void setAvailable(boolean available) {
+            this.available = available;
+        }
+
+        /**
+         * Called when a request is sent to the node.
+         */
+        public void onRequest() {
+            outstanding++;
+        }
+
+        /**
+         * Called when a request sent to the node has completed or failed.
+         */
+        public void onResponse() {
+            outstanding--;
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port;
+        }
+    }
+}
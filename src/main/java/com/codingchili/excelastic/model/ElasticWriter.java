@@ -4,15 +4,29 @@ import com.codingchili.excelastic.logging.ApplicationLogger;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaderValues;
 import io.vertx.core.*;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
 import io.vertx.core.http.*;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonObject;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
 import static com.codingchili.excelastic.controller.Website.*;
+import static com.codingchili.excelastic.model.BulkResponse.STATUS_TOO_MANY_REQUESTS;
 
 /**
  * @author Robin Duda
@@ -21,26 +35,76 @@ import static com.codingchili.excelastic.controller.Website.*;
  */
 public class ElasticWriter extends AbstractVerticle {
     public static final String IMPORT_PROGRESS = "import.progress";
+    public static final String IMPORT_CANCEL = "import.cancel";
     public static final String ES_STATUS = "es-status";
     public static final int INDEXING_TIMEOUT = 3000000;
-    public static final int MAX_BATCH = 128;
 
     private static final String BULK = "/_bulk";
+    private static final String NODES_HTTP = "/_nodes/http";
+    private static final String SETTINGS = "/_settings";
+    private static final String REFRESH = "/_refresh";
+    private static final String MAPPING = "/_mapping";
+    private static final String FORCE_MERGE = "/_forcemerge?max_num_segments=";
+    private static final String REFRESH_INTERVAL = "index.refresh_interval";
+    private static final String REPLICAS = "index.number_of_replicas";
+    private static final String INDEX = "index";
+    private static final String PUBLISH_ADDRESS = "publish_address";
+    // only the status and errors of the items are needed from bulk responses.
+    private static final String FILTER_PATH =
+            "?filter_path=took,errors,items.*.status,items.*.error.type,items.*.error.reason";
+    private static final int FIRST_REQUEST = 128;
+    private static final int RETRY_LIMIT = 8;
+    private static final int RETRY_DELAY = 125;
     private static final int POLL = 5000;
-    private static final String PROGRESS = "progress";
+    // the status of requests that failed without a response, for example when the connection was refused.
+    private static final int NO_RESPONSE = 0;
+    private static final String REJECTED = "rejected by elasticsearch";
+    public static final String PROGRESS = "progress";
+    public static final String ITEMS = "items";
     public static final String IMPORT = "import";
     private static boolean connected = false;
     private static String version = "";
 
     private ApplicationLogger logger = new ApplicationLogger(getClass());
+    private ElasticNodes nodes = new ElasticNodes(Configuration.getElasticNodes(), Configuration.getLoadBalancing());
+    private Map<String, FastLoad> fastLoads = new HashMap<>();
+    private Set<ImportEvent> imports = new HashSet<>();
+    private BulkSizer sizer = new BulkSizer(Configuration.getBulkMinBytes(), Configuration.getBulkMaxBytes());
     private Vertx vertx;
+    private Context context;
+    private FileImporter importer;
+    private HttpClient client;
+    private long requests = 0;
+    private long connections = 0;
+    private int open = 0;
 
     @Override
     public void init(Vertx vertx, Context context) {
         this.vertx = vertx;
+        this.context = context;
+        this.client = createHttpClient();
+        this.importer = new FileImporter(vertx);
         vertx.setPeriodic(POLL, this::pollElasticServer);
     }
 
+    /**
+     * @return a client that is shared by all requests to elasticsearch, connections are kept
+     * alive and reused between requests.
+     */
+    private HttpClient createHttpClient() {
+        HttpClient client = vertx.createHttpClient(new HttpClientOptions()
+                .setKeepAlive(true)
+                .setMaxPoolSize(Configuration.getHttpPoolSize())
+                .setPipelining(Configuration.isHttpPipelining()));
+
+        client.connectionHandler(connection -> {
+            connections++;
+            open++;
+            connection.closeHandler(closed -> open--);
+        });
+        return client;
+    }
+
     @Override
     public void start(Future<Void> start) {
         startSubmitListener();
@@ -49,110 +113,497 @@ public class ElasticWriter extends AbstractVerticle {
         pollElasticServer(0L);
     }
 
+    @Override
+    public void stop() {
+        client.close();
+    }
+
     /**
-     * Listens on the event bus for files.
+     * Listens on the event bus for files. When the event bus is clustered files are received
+     * from all nodes, streams are only received from the local node.
      */
     private void startSubmitListener() {
-        vertx.eventBus().consumer(Configuration.INDEXING_ELASTICSEARCH, handler -> {
+        Handler<Message<Object>> submit = handler -> {
             ImportEvent event = (ImportEvent) handler.body();
 
-            clearBeforeIndexing(done -> {
-
-                event.getParser().subscribe(new Subscriber<JsonObject>() {
-                    private AtomicInteger parsed = new AtomicInteger(0);
-                    private AtomicInteger sent = new AtomicInteger(0);
-                    private AtomicBoolean complete = new AtomicBoolean(false);
-                    private HttpClientRequest request = openChunkedRequest();
-                    private String header = createImportHeader(event);
-                    private Subscription subscription;
-
-                    private HttpClientRequest openChunkedRequest() {
-                        return post(event.getIndex() + BULK)
-                                .handler(response -> response.bodyHandler(body -> {
-
-                                    // update the progress on finished batch submission.
-                                    updateStatus(response, event, sent.get());
-
-                                    if (complete.get()) {
-                                        // signal completion over the cluster.
-                                        handler.reply(null);
-                                    } else {
-                                        // request more items - we dont do this until the current request
-                                        // is finished with a status code.
-                                        subscription.request(MAX_BATCH);
-                                    }
-                                })).exceptionHandler(this::onError).setChunked(true);
+            if (event.getParser() == null) {
+                // the import can be cancelled while the file is parsed.
+                imports.add(event);
+
+                // events from other nodes carry the location of the file instead of the parser.
+                importer.parse(event).setHandler(parsed -> {
+                    if (parsed.succeeded()) {
+                        index(event, handler, true);
+                    } else {
+                        imports.remove(event);
+                        logger.onError(parsed.cause());
+                        handler.fail(500, ApplicationLogger.traceToText(parsed.cause()));
                     }
+                });
+            } else {
+                index(event, handler, false);
+            }
+        };
+        vertx.eventBus().consumer(Configuration.INDEXING_ELASTICSEARCH, submit);
+        vertx.eventBus().localConsumer(Configuration.INDEXING_LOCAL, submit);
+
+        // imports are cancelled on all nodes, as the import may be indexed by another node.
+        vertx.eventBus().<String>consumer(IMPORT_CANCEL, message -> imports.stream()
+                .filter(event -> message.body().equals(event.getUploadId()))
+                .forEach(ImportEvent::cancel));
+    }
 
-                    private void endChunkedRequest() {
-                        // ends the request forcing the remote to process all submitted items and
-                        // provide a status code before we continue.
-                        request.end();
-                    }
+    /**
+     * @param event   the event to index.
+     * @param handler the message to reply to with the number of indexed items.
+     * @param remote  true if the parser was created by this node, the parser is then released
+     *                when indexing completes.
+     */
+    private void index(ImportEvent event, Message<Object> handler, boolean remote) {
+        imports.add(event);
 
-                    @Override
-                    public void onSubscribe(Subscription subscription) {
-                        this.subscription = subscription;
-                        // we use -1 here to guarantee that there is only one simultaneous request in flight.
-                        // when the in-flight request is commited we only need to parse 1 element before we
-                        // can end the next chunked request.
-                        subscription.request(MAX_BATCH * 2 - 1);
+        if (event.isCancelled()) {
+            release(event, remote);
+            handler.fail(500, ApplicationLogger.traceToText(new ImportCancelledException(event.getIndex())));
+            return;
+        }
+
+        clearBeforeIndexing(done -> beforeIndexing(event, prepared -> {
+            if (prepared.succeeded()) {
+                putMapping(event).setHandler(mapped -> {
+                    event.getParser().subscribe(new BulkSubscriber(event, handler, remote));
+                });
+            } else {
+                release(event, remote);
+                logger.onError(prepared.cause());
+                handler.fail(500, ApplicationLogger.traceToText(prepared.cause()));
+            }
+        }), event);
+    }
+
+    private void release(ImportEvent event, boolean remote) {
+        imports.remove(event);
+
+        if (remote) {
+            event.getParser().free();
+        }
+    }
+
+    /**
+     * Submits the parsed items in bulk requests that are sized by bytes. Multiple bulk requests
+     * may be in flight at the same time, items are only requested from the parser while the
+     * current batch is not full and no full batch is waiting to be sent.
+     * <p>
+     * Parsers may signal the subscriber from any thread or context, the signals are always
+     * handled on the context of the writer.
+     */
+    private class BulkSubscriber implements Subscriber<JsonObject> {
+        private final int concurrency = Configuration.getBulkConcurrency();
+        private final int level = Configuration.getBulkGzipLevel();
+        private final Deque<Batch> ready = new ArrayDeque<>();
+        private final Message<Object> handler;
+        private final ImportEvent event;
+        private final boolean remote;
+        private final BulkEncoder encoder;
+        private final DeadLetterFile deadLetters;
+        private final ProgressThrottle throttle;
+        private final int total;
+        private Subscription subscription;
+        private Batch batch = new Batch(level);
+        private boolean completed = false;
+        private boolean finished = false;
+        private long requested = 0;
+        private long bytes = 0;
+        private int parsed = 0;
+        private int indexed = 0;
+        private int inFlight = 0;
+
+        BulkSubscriber(ImportEvent event, Message<Object> handler, boolean remote) {
+            this.event = event;
+            this.handler = handler;
+            this.remote = remote;
+            this.encoder = new BulkEncoder(createImportHeader(event), event.getIdColumns());
+            this.deadLetters = new DeadLetterFile(vertx, event.getIndex());
+            this.throttle = new ProgressThrottle(vertx, Configuration.getProgressIntervalMs());
+            // streams are imported until the parser completes.
+            this.total = event.getParser().isStreaming() ?
+                    Integer.MAX_VALUE : event.getParser().getNumberOfElements();
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+
+            context.runOnContext(on -> {
+                // parsers only complete after the last row, files without rows are done when subscribed.
+                if (isDone()) {
+                    finish();
+                } else {
+                    next();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(JsonObject entry) {
+            context.runOnContext(on -> {
+                if (!finished) {
+                    int size = batch.size;
+                    writeToBatch(batch, encoder, entry);
+                    bytes += batch.size - size;
+                    requested--;
+                    parsed++;
+
+                    if (batch.size >= sizer.getTarget() || parsed >= total) {
+                        ready.add(batch.close());
+                        batch = new Batch(level);
                     }
+                    next();
+                }
+            });
+        }
+
+        /**
+         * Sends the batches that are ready when there is room for more requests in flight and
+         * requests more items from the parser if there is no full batch waiting to be sent.
+         */
+        private void next() {
+            if (event.isCancelled()) {
+                onError(new ImportCancelledException(event.getIndex()));
+                return;
+            }
+            while (!ready.isEmpty() && inFlight < concurrency) {
+                send(ready.poll());
+            }
+            if (ready.isEmpty() && requested == 0 && !completed && parsed < total) {
+                requested = getItemsToRequest();
+                subscription.request(requested);
+            }
+        }
+
+        /**
+         * @return the number of items that is estimated to fill the current batch, based on
+         * the average size of the items that has been parsed so far.
+         */
+        private long getItemsToRequest() {
+            if (parsed == 0) {
+                return FIRST_REQUEST;
+            } else {
+                long average = Math.max(bytes / parsed, 1);
+                long remaining = Math.max(sizer.getTarget() - batch.size, 0);
+                return Math.max(Math.min(remaining / average, total - parsed), 1);
+            }
+        }
 
-                    @Override
-                    public void onNext(JsonObject entry) {
-                        vertx.runOnContext(on -> {
-                            writeToChunkedRequest(request, header, entry);
-
-                            int done = parsed.incrementAndGet();
-                            int total = event.getParser().getNumberOfElements();
-
-                            if (done % MAX_BATCH == 0 || done >= total) {
-                                sent.set(done);
-                                endChunkedRequest();
-
-                                if (done != total) {
-                                    request = openChunkedRequest();
-                                } else {
-                                    complete.set(true);
-                                    subscription.cancel();
-                                }
-                            }
-                        });
+        private void send(Batch batch) {
+            long start = System.currentTimeMillis();
+            ElasticNodes.Node node = nodes.next();
+            HttpClientRequest request = post(node, "/" + event.getIndex() + BULK + FILTER_PATH);
+            node.onRequest();
+            inFlight++;
+
+            if (level > 0) {
+                request.putHeader(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.GZIP);
+            }
+
+            request.handler(response -> response.bodyHandler(result -> {
+                node.onResponse();
+                inFlight--;
+
+                if (!finished) {
+                    onResponse(batch, response, result, start);
+                }
+
+                if (isDone()) {
+                    finish();
+                } else if (!finished) {
+                    next();
+                }
+            })).exceptionHandler(error -> {
+                node.onResponse();
+                node.setAvailable(false);
+                inFlight--;
+
+                if (!finished) {
+                    // the node is used again when it responds to a poll, if no node is available
+                    // the batch is retried on all nodes, for example when a pooled connection was closed.
+                    logger.onError(error);
+                    retry(batch, NO_RESPONSE, error.toString());
+
+                    // the import is done if the last batch was dead lettered after its last attempt.
+                    if (isDone()) {
+                        finish();
+                    } else {
+                        next();
                     }
+                }
+            }).end(batch.body);
+        }
 
-                    @Override
-                    public void onError(Throwable throwable) {
-                        logger.onError(throwable);
-                        handler.fail(500, ApplicationLogger.traceToText(throwable));
-                        subscription.cancel();
+        /**
+         * Checks the result of each item in the bulk request. Items that was rejected because
+         * elasticsearch is overloaded are retried, other failed items are dead lettered.
+         * <p>
+         * When the whole request fails with a server error the batch is retried, other errors
+         * such as failed authentication are not fixed by retrying and fails the import.
+         *
+         * @param batch    the batch that was sent.
+         * @param response the response to the bulk request.
+         * @param result   the body of the response.
+         * @param start    the time when the request was sent, used if the response has no took time.
+         */
+        private void onResponse(Batch batch, HttpClientResponse response, Buffer result, long start) {
+            int status = response.statusCode();
+
+            if (status == STATUS_TOO_MANY_REQUESTS) {
+                sizer.onRejected();
+                retry(batch, status, response.statusMessage());
+            } else if (status >= 500) {
+                // the cluster may be restarting or a proxy may be unable to reach it.
+                retry(batch, status, response.statusMessage());
+            } else if (status >= 300) {
+                fail(new IllegalStateException(String.format("Bulk request to index '%s' failed with status %d: %s",
+                        event.getIndex(), status, result.toString())));
+            } else {
+                BulkResponse bulk = getBulkResponse(result);
+                Batch rejected = new Batch(level);
+                rejected.attempts = batch.attempts;
+                int existing = 0;
+
+                for (BulkResponse.Failure failure : bulk.getFailures()) {
+                    JsonObject item = batch.items.get(failure.getPosition());
+
+                    if (failure.isConflict() && event.getCreate()) {
+                        // the document was indexed by a previous import or attempt.
+                        existing++;
+                    } else if (failure.isRejected()) {
+                        writeToBatch(rejected, encoder, item);
+                    } else {
+                        deadLetters.write(item, failure.getStatus(), failure.getError());
                     }
+                }
+                deadLetters.flush();
+
+                if (rejected.items.isEmpty()) {
+                    sizer.onCompleted(batch.size,
+                            (bulk.getTook() < 0) ? System.currentTimeMillis() - start : bulk.getTook());
+                } else {
+                    sizer.onRejected();
+                    retry(rejected.close(), STATUS_TOO_MANY_REQUESTS, REJECTED);
+                }
+
+                int count = batch.items.size() - bulk.getFailures().size() + existing;
+                indexed += count;
+
+                // the number of indexed items is correct even if requests completes out of order.
+                updateStatus(response, event, throttle, indexed + deadLetters.getCount(), count);
+            }
+        }
 
-                    @Override
-                    public void onComplete() {
-                        // do nothing until all items are indexed.
+        /**
+         * Sends the batch again after a delay, the delay doubles for each attempt. The batch
+         * is counted as in flight while waiting. When all attempts are used the items in the
+         * batch are dead lettered.
+         *
+         * @param batch  the batch to send again.
+         * @param status the http status of the failed attempt, {@link #NO_RESPONSE} if there was no response.
+         * @param error  a description of why the last attempt failed.
+         */
+        private void retry(Batch batch, int status, String error) {
+            if (batch.attempts++ < RETRY_LIMIT) {
+                inFlight++;
+                vertx.setTimer(RETRY_DELAY << batch.attempts, timer -> {
+                    inFlight--;
+                    if (!finished) {
+                        send(batch);
                     }
                 });
-            }, event);
-        });
+            } else {
+                batch.items.forEach(item -> deadLetters.write(item, status,
+                        String.format("failed %d times to index into elasticsearch: %s", batch.attempts, error)));
+                deadLetters.flush();
+                throttle.publish(getProgress(event, indexed + deadLetters.getCount()));
+            }
+        }
+
+        /**
+         * @param result the body of a bulk response.
+         * @return the parsed response or an empty response if the body is not a bulk response.
+         */
+        private BulkResponse getBulkResponse(Buffer result) {
+            try {
+                return BulkResponse.parse(result);
+            } catch (DecodeException e) {
+                logger.onError(e);
+                return new BulkResponse();
+            }
+        }
+
+        private boolean isDone() {
+            return (completed || parsed >= total) && batch.items.isEmpty() && ready.isEmpty() && inFlight == 0;
+        }
+
+        private void finish() {
+            if (!finished) {
+                finished = true;
+                subscription.cancel();
+                throttle.flush();
+                release(event, remote);
+                logger.onConnectionReuse(requests, connections, open);
+
+                if (deadLetters.getCount() > 0) {
+                    logger.onDeadLettered(deadLetters.getCount(), deadLetters.getPath());
+                }
+
+                afterIndexing(event, restored -> {
+                    // signal completion over the cluster with the number of indexed items.
+                    handler.reply(indexed);
+                });
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            context.runOnContext(on -> fail(throwable));
+        }
+
+        /**
+         * Fails the import, must be called on the context of the writer.
+         *
+         * @param throwable the cause of the failure.
+         */
+        private void fail(Throwable throwable) {
+            if (!finished) {
+                finished = true;
+                logger.onError(throwable);
+                subscription.cancel();
+                throttle.flush();
+                release(event, remote);
+                afterIndexing(event, restored -> handler.fail(500, ApplicationLogger.traceToText(throwable)));
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            context.runOnContext(on -> {
+                completed = true;
+
+                if (!batch.items.isEmpty()) {
+                    ready.add(batch.close());
+                    batch = new Batch(level);
+                }
+
+                if (isDone()) {
+                    finish();
+                } else {
+                    next();
+                }
+            });
+        }
+    }
+
+    /**
+     * A bulk request body and the items in it, the items are kept so that failed items can
+     * be retried. When a compression level is set the body is compressed with gzip while
+     * the items are written.
+     */
+    private static class Batch {
+        private final List<JsonObject> items = new ArrayList<>();
+        private final Buffer body = Buffer.buffer();
+        private final GZIPOutputStream gzip;
+        private int size = 0;
+        private int attempts = 0;
+
+        Batch(int level) {
+            if (level > 0) {
+                try {
+                    gzip = new GZIPOutputStream(new OutputStream() {
+                        @Override
+                        public void write(int b) {
+                            body.appendByte((byte) b);
+                        }
+
+                        @Override
+                        public void write(byte[] bytes, int offset, int length) {
+                            body.appendBytes(bytes, offset, length);
+                        }
+                    }) {
+                        {
+                            def.setLevel(level);
+                        }
+                    };
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else {
+                gzip = null;
+            }
+        }
+
+        /**
+         * @param data   the data to add to the body of the batch.
+         * @param length the number of bytes to add from the data.
+         */
+        void write(byte[] data, int length) {
+            size += length;
+
+            if (gzip == null) {
+                body.appendBytes(data, 0, length);
+            } else {
+                try {
+                    gzip.write(data, 0, length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        /**
+         * Completes the body, no more data may be written after the batch is closed.
+         *
+         * @return the closed batch.
+         */
+        Batch close() {
+            if (gzip != null) {
+                try {
+                    gzip.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return this;
+        }
     }
 
     /**
      * Emits a status event to the console and any listening remote clients.
      *
-     * @param response the http response returned from ending the last chunked write.
+     * @param response the http response returned from the last bulk request.
      * @param event    the import event that is being processed.
-     * @param received the number of elements that has been indexed.
+     * @param throttle limits the rate that the progress of the import is published at.
+     * @param received the number of elements that has been indexed or dead lettered.
+     * @param count    the number of elements in the last bulk request.
      */
-    private void updateStatus(HttpClientResponse response, ImportEvent event, int received) {
+    private void updateStatus(HttpClientResponse response, ImportEvent event, ProgressThrottle throttle,
+                              int received, int count) {
+
+        float percent = event.getParser().getProgress(received);
+        logger.onImportedBatch(response, event, event.getParser().getNumberOfElements(), received, count, percent);
 
-        float percent = (received * 1.0f / event.getParser().getNumberOfElements()) * 100;
-        logger.onImportedBatch(response, event, event.getParser().getNumberOfElements(), received, percent);
+        throttle.publish(getProgress(event, received));
+    }
 
-        vertx.eventBus().publish(IMPORT_PROGRESS, new JsonObject()
+    /**
+     * @param event    the import event that is being processed.
+     * @param received the number of elements that has been indexed or dead lettered.
+     * @return the progress of the import, published to listening remote clients.
+     */
+    private JsonObject getProgress(ImportEvent event, int received) {
+        return new JsonObject()
                 .put(ACTION, IMPORT)
-                .put(PROGRESS, percent)
-                .put(UPLOAD_ID, event.getUploadId()));
+                .put(PROGRESS, event.getParser().getProgress(received))
+                .put(ITEMS, received)
+                .put(UPLOAD_ID, event.getUploadId());
     }
 
     private String createImportHeader(ImportEvent event) {
@@ -164,8 +615,9 @@ public class ElasticWriter extends AbstractVerticle {
                 .filter(value -> !value.isEmpty())
                 .ifPresent((pipeline) -> indexBody.put("pipeline", pipeline));
 
+        // with create documents that already exists are not overwritten.
         return new JsonObject()
-                .put("index", indexBody)
+                .put(event.getCreate() ? "create" : "index", indexBody)
                 .encode() + "\n";
 
     }
@@ -173,19 +625,19 @@ public class ElasticWriter extends AbstractVerticle {
     /**
      * Builds a bulk query for insertion into elasticsearch
      *
-     * @param request the request to stream the bulk insert into.
-     * @param header  the static header that indicates which index to import the item into.
+     * @param batch   the batch to write the bulk insert into.
+     * @param encoder the encoder with the header that indicates which index to import the item into.
      * @param json    the current item to import into the index.
      */
-    private void writeToChunkedRequest(HttpClientRequest request, String header, JsonObject json) {
-        request.write(header);
-        request.write(json.toBuffer());
-        request.write("\n");
+    private void writeToBatch(Batch batch, BulkEncoder encoder, JsonObject json) {
+        batch.items.add(json);
+        int length = encoder.encode(json);
+        batch.write(encoder.getBytes(), length);
     }
 
     private void clearBeforeIndexing(Handler<AsyncResult<?>> done, ImportEvent event) {
         if (event.getClearExisting()) {
-            delete("/" + event.getIndex()).handler(req -> {
+            delete(nodes.next(), "/" + event.getIndex()).handler(req -> {
                 done.handle(Future.succeededFuture());
             }).end();
         } else {
@@ -193,10 +645,270 @@ public class ElasticWriter extends AbstractVerticle {
         }
     }
 
-    private HttpClientRequest post(String path) {
-        HttpClientRequest client = vertx.createHttpClient().post(getOptions(path));
-        addHeaders(client);
-        return client;
+    /**
+     * Applies settings for bulk loading to the index when the import is a fast load. The
+     * settings are applied by the first import into the index, the other imports into the
+     * same index waits until the settings are applied.
+     *
+     * @param event the import event that is about to be indexed.
+     * @param done  called when the index is prepared.
+     */
+    private void beforeIndexing(ImportEvent event, Handler<AsyncResult<Void>> done) {
+        String index = event.getIndex();
+        FastLoad load = fastLoads.get(index);
+
+        if (!event.getFastLoad()) {
+            done.handle(Future.succeededFuture());
+        } else if (load == null) {
+            FastLoad created = new FastLoad();
+            created.waiting.add(done);
+            created.imports++;
+            fastLoads.put(index, created);
+
+            applyFastLoad(event).setHandler(applied -> {
+                if (applied.succeeded()) {
+                    created.settings = applied.result();
+                    logger.onFastLoadStarted(index);
+                } else {
+                    fastLoads.remove(index);
+                }
+                created.notifyWaiting(applied.map((Void) null));
+            });
+        } else if (load.restoring) {
+            // the settings must be restored before they are read again.
+            load.waiting.add(restored -> beforeIndexing(event, done));
+        } else {
+            load.imports++;
+            if (load.settings == null) {
+                load.waiting.add(done);
+            } else {
+                done.handle(Future.succeededFuture());
+            }
+        }
+    }
+
+    /**
+     * Restores the settings of the index when the last fast load into the index has
+     * completed or failed. The index is refreshed and optionally force merged.
+     *
+     * @param event the import event that has been indexed.
+     * @param done  called when the settings are restored, failures are logged.
+     */
+    private void afterIndexing(ImportEvent event, Handler<AsyncResult<Void>> done) {
+        String index = event.getIndex();
+        FastLoad load = fastLoads.get(index);
+
+        if (!event.getFastLoad() || load == null || --load.imports > 0) {
+            done.handle(Future.succeededFuture());
+        } else {
+            load.restoring = true;
+
+            request(HttpMethod.PUT, "/" + index + SETTINGS, load.settings)
+                    .compose(restored -> request(HttpMethod.POST, "/" + index + REFRESH, null))
+                    .setHandler(restored -> {
+                        if (restored.succeeded()) {
+                            logger.onFastLoadCompleted(index);
+                            forceMerge(index);
+                        } else {
+                            logger.onError(restored.cause());
+                        }
+                        fastLoads.remove(index);
+                        done.handle(restored.map((Void) null));
+                        load.notifyWaiting(restored.map((Void) null));
+                    });
+        }
+    }
+
+    /**
+     * Creates the index if it does not exist and applies the settings for bulk loading.
+     *
+     * @param event the import event to apply the settings for.
+     * @return a future completed with the settings to restore when the import completes.
+     */
+    private Future<JsonObject> applyFastLoad(ImportEvent event) {
+        String index = "/" + event.getIndex();
+
+        return exists(index).compose(exists -> {
+            if (exists) {
+                return request(HttpMethod.GET, index + SETTINGS + "/" + REFRESH_INTERVAL + "," + REPLICAS +
+                        "?flat_settings=true", null).map(this::getRestoreSettings);
+            } else {
+                JsonObject settings = getFastLoadSettings();
+                if (Configuration.getIndexShards() > 0) {
+                    settings.getJsonObject(INDEX).put("number_of_shards", Configuration.getIndexShards());
+                }
+                // restore the default settings when the index is created.
+                return request(HttpMethod.PUT, index, new JsonObject().put("settings", settings))
+                        .map(created -> getRestoreSettings(new JsonObject()));
+            }
+        }).compose(restore -> request(HttpMethod.PUT, index + SETTINGS, getFastLoadSettings()).map(restore));
+    }
+
+    /**
+     * @param response the flat settings of the index as returned by the settings api.
+     * @return the settings to restore, settings that are not set are restored to their default.
+     */
+    private JsonObject getRestoreSettings(JsonObject response) {
+        JsonObject settings = new JsonObject();
+
+        // the response is keyed by the name of the index, which may differ if the index is an alias.
+        response.forEach(entry -> settings.mergeIn(((JsonObject) entry.getValue()).getJsonObject("settings")));
+
+        return new JsonObject().put(INDEX, new JsonObject()
+                .put("refresh_interval", settings.getValue(REFRESH_INTERVAL))
+                .put("number_of_replicas", settings.getValue(REPLICAS)));
+    }
+
+    private JsonObject getFastLoadSettings() {
+        return new JsonObject().put(INDEX, new JsonObject()
+                .put("refresh_interval", "-1")
+                .put("number_of_replicas", 0));
+    }
+
+    /**
+     * Starts a force merge of the index if configured, the import does not wait for it to complete.
+     *
+     * @param index the index to force merge.
+     */
+    private void forceMerge(String index) {
+        int segments = Configuration.getForceMergeSegments();
+
+        if (segments > 0) {
+            request(HttpMethod.POST, "/" + index + FORCE_MERGE + segments, null).setHandler(merged -> {
+                if (merged.failed()) {
+                    logger.onError(merged.cause());
+                }
+            });
+        }
+    }
+
+    /**
+     * Puts a mapping for the columns of the parsed file before indexing, so that fields are
+     * not mapped dynamically while bulk requests are processed. Columns without values are
+     * left to dynamic mapping. If the mapping cannot be applied the import continues with
+     * dynamic mapping, for example when a field is already mapped to another type.
+     *
+     * @param event the import event with a parser that has detected the column types.
+     * @return a future that is always completed when the mapping is applied or has failed.
+     */
+    private Future<Void> putMapping(ImportEvent event) {
+        JsonObject properties = new JsonObject();
+        event.getParser().getColumnTypes().forEach((column, type) -> {
+            if (type.getMapping() != null) {
+                properties.put(column, type.getMapping());
+            }
+        });
+
+        // mappings are not created for pipelines, as pipelines may change the fields.
+        if (!Configuration.isExplicitMapping() || properties.isEmpty() || event.getPipeline().isPresent()) {
+            return Future.succeededFuture();
+        }
+
+        if (!event.getSheets().isEmpty()) {
+            properties.put(WorkbookParser.SHEET, new JsonObject().put("type", "keyword"));
+        }
+
+        String index = "/" + event.getIndex();
+        JsonObject mapping = new JsonObject().put("properties", properties);
+        // the type of the mapping must match the type in the bulk requests.
+        String parameters = (getMajorVersion() >= 7) ? "?include_type_name=true" : "";
+
+        String type = index + MAPPING + "/" + event.getMapping() + parameters;
+
+        return exists(index).compose(exists -> {
+            if (exists) {
+                return request(HttpMethod.PUT, type, mapping);
+            } else {
+                // sheets that are imported at the same time may create the index first.
+                return request(HttpMethod.PUT, index + parameters, new JsonObject()
+                        .put("mappings", new JsonObject().put(event.getMapping(), mapping)))
+                        .recover(error -> request(HttpMethod.PUT, type, mapping));
+            }
+        }).otherwise(error -> {
+            logger.onError(error);
+            return null;
+        }).map((Void) null);
+    }
+
+    /**
+     * @return the major version of the elasticsearch server, 0 if not connected.
+     */
+    private int getMajorVersion() {
+        try {
+            return Integer.parseInt(version.split("\\.")[0]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @param path the path of the index.
+     * @return a future completed with true if the index exists.
+     */
+    private Future<Boolean> exists(String path) {
+        Future<Boolean> future = Future.future();
+        HttpClientRequest request = client.head(getOptions(nodes.next(), path));
+        requests++;
+        addHeaders(request);
+        request.handler(response -> future.complete(response.statusCode() == 200))
+                .exceptionHandler(future::fail)
+                .end();
+        return future;
+    }
+
+    /**
+     * Sends a request to elasticsearch.
+     *
+     * @param method the http method of the request.
+     * @param path   the path of the request.
+     * @param body   the body of the request or null to send an empty request.
+     * @return a future completed with the response body, fails if the response is an error.
+     */
+    private Future<JsonObject> request(HttpMethod method, String path, JsonObject body) {
+        Future<JsonObject> future = Future.future();
+        HttpClientRequest request = client.request(method, getOptions(nodes.next(), path));
+        requests++;
+        addHeaders(request);
+
+        request.handler(response -> response.bodyHandler(buffer -> {
+            if (response.statusCode() < 300) {
+                future.complete((buffer.length() == 0) ? new JsonObject() : buffer.toJsonObject());
+            } else {
+                future.fail(new IllegalStateException(String.format("Request %s %s failed with status %d: %s",
+                        method, path, response.statusCode(), buffer.toString())));
+            }
+        })).exceptionHandler(future::fail);
+
+        if (body == null) {
+            request.end();
+        } else {
+            request.end(body.toBuffer());
+        }
+        return future;
+    }
+
+    /**
+     * The settings of an index that is fast loaded, the settings are restored when all
+     * imports into the index has completed.
+     */
+    private static class FastLoad {
+        private final List<Handler<AsyncResult<Void>>> waiting = new ArrayList<>();
+        private JsonObject settings;
+        private boolean restoring = false;
+        private int imports = 0;
+
+        void notifyWaiting(AsyncResult<Void> result) {
+            List<Handler<AsyncResult<Void>>> handlers = new ArrayList<>(waiting);
+            waiting.clear();
+            handlers.forEach(handler -> handler.handle(result));
+        }
+    }
+
+    private HttpClientRequest post(ElasticNodes.Node node, String path) {
+        HttpClientRequest request = client.post(getOptions(node, path));
+        requests++;
+        addHeaders(request);
+        return request;
     }
 
     private void addHeaders(HttpClientRequest client) {
@@ -210,43 +922,78 @@ public class ElasticWriter extends AbstractVerticle {
         });
     }
 
-    private RequestOptions getOptions(String path) {
+    private RequestOptions getOptions(ElasticNodes.Node node, String path) {
         return new RequestOptions()
-                .setPort(Configuration.getElasticPort())
-                .setHost(Configuration.getElasticHost())
+                .setPort(node.getPort())
+                .setHost(node.getHost())
                 .setSsl(Configuration.isElasticTLS())
                 .setURI(path);
     }
 
     /**
-     * Polls the elasticsearch server for version information. Sets connected if the server
-     * is available.
+     * Polls the elasticsearch nodes for version information. Nodes that does not respond
+     * are not used until they respond again. Sets connected if any node is available.
      *
      * @param id the id of the timer that triggered the request, not used.
      */
     private void pollElasticServer(Long id) {
-        get("/").handler(handler -> handler.bodyHandler((buffer -> {
-            version = buffer.toJsonObject().getJsonObject("version").getString("number");
-            if (!connected) {
-                logger.onWriterConnected(version);
-                connected = true;
-                vertx.eventBus().send(ES_STATUS, connected);
-            }
-        })).exceptionHandler(error -> {
-            connected = false;
-            logger.onError(error);
-            vertx.eventBus().send(ES_STATUS, connected);
-        })).end();
+        if (Configuration.isElasticSniffing() && nodes.isAvailable()) {
+            sniff(nodes.next());
+        }
+
+        for (ElasticNodes.Node node : nodes.getNodes()) {
+            get(node, "/").handler(handler -> handler.bodyHandler(buffer -> {
+                version = buffer.toJsonObject().getJsonObject("version").getString("number");
+                node.setAvailable(true);
+                if (!connected) {
+                    logger.onWriterConnected(version, node);
+                    connected = true;
+                    vertx.eventBus().send(ES_STATUS, connected);
+                }
+            })).exceptionHandler(error -> {
+                // connection errors and timeouts are reported on the request, not the response.
+                node.setAvailable(false);
+                logger.onError(error);
+                if (!nodes.isAvailable()) {
+                    connected = false;
+                    vertx.eventBus().send(ES_STATUS, connected);
+                }
+            }).end();
+        }
+    }
+
+    /**
+     * Discovers the http addresses of the other nodes in the cluster, the discovered
+     * nodes are used when they have responded to a poll.
+     *
+     * @param node the node to request the nodes info from.
+     */
+    private void sniff(ElasticNodes.Node node) {
+        get(node, NODES_HTTP).handler(response -> response.bodyHandler(buffer -> {
+            JsonObject discovered = buffer.toJsonObject().getJsonObject("nodes", new JsonObject());
+
+            discovered.forEach(entry -> {
+                JsonObject http = ((JsonObject) entry.getValue()).getJsonObject("http");
+
+                if (http != null && http.getString(PUBLISH_ADDRESS) != null) {
+                    // the address may be prefixed with the host name: hostname/ip:port.
+                    String address = http.getString(PUBLISH_ADDRESS);
+                    nodes.add(address.substring(address.indexOf('/') + 1)).ifPresent(logger::onNodeDiscovered);
+                }
+            });
+        })).exceptionHandler(logger::onError).end();
     }
 
-    private HttpClientRequest get(String path) {
-        HttpClientRequest request = vertx.createHttpClient().get(getOptions(path));
+    private HttpClientRequest get(ElasticNodes.Node node, String path) {
+        HttpClientRequest request = client.get(getOptions(node, path));
+        requests++;
         addHeaders(request);
         return request;
     }
 
-    private HttpClientRequest delete(String path) {
-        HttpClientRequest request = vertx.createHttpClient().delete(getOptions(path));
+    private HttpClientRequest delete(ElasticNodes.Node node, String path) {
+        HttpClientRequest request = client.delete(getOptions(node, path));
+        requests++;
         addHeaders(request);
         return request;
     }
@@ -0,0 +1,350 @@
+package com.codingchili.excelastic.model;
+
+import com.codingchili.excelastic.logging.ApplicationLogger;
+import io.vertx.core.json.JsonObject;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.*;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * Parses excel files into json objects without loading the workbook into memory.
+ * <p>
+ * Implementations reads the rows of a sheet from the file one at a time, each time
+ * the file is parsed the sheet is read again from the start. The values are converted
+ * in the same way for both the OOXML and the 97-2003 formats.
+ */
+public abstract class ExcelStreamParser implements WorkbookParser {
+    private static final String GENERAL = "General";
+    protected ApplicationLogger logger = new ApplicationLogger(getClass());
+    private DataFormatter formatter = new DataFormatter();
+    private Map<Integer, Boolean> dateFormats = new HashMap<>();
+    protected boolean date1904 = false;
+    protected String fileName;
+    protected String sheet;
+    protected int offset;
+    private ColumnType[] types;
+    private String[] titles;
+    private int rows;
+
+    /**
+     * @return a new reader that starts reading from the first row of the selected sheet,
+     * if no sheet is selected the first sheet is read.
+     */
+    protected abstract SheetReader open();
+
+    @Override
+    public void setSheet(String sheet) {
+        if (getSheetNames().contains(sheet)) {
+            this.sheet = sheet;
+        } else {
+            throw new ParserException(
+                    String.format("Sheet '%s' was not found in file %s.", sheet, fileName));
+        }
+    }
+
+    @Override
+    public void initialize() {
+        logger.parsingFile(fileName, offset);
+
+        try (SheetReader sheet = open()) {
+            titles = getTitles(skipToTitles(sheet));
+            types = new ColumnType[titles.length];
+            Arrays.fill(types, ColumnType.EMPTY);
+            rows = 0;
+
+            // only consecutive rows after the titles are imported.
+            for (SheetRow row = sheet.next(); row != null && row.index == offset + 1 + rows; row = sheet.next()) {
+                for (SheetCell cell : row.cells) {
+                    if (cell.column < titles.length) {
+                        if (DataTypes.isCompatible()) {
+                            getValue(cell, null);
+                        } else {
+                            types[cell.column] = types[cell.column].merge(getType(cell));
+                        }
+                    }
+                }
+                rows++;
+            }
+        }
+
+        logger.parsedFile(rows - 1, fileName);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super JsonObject> subscriber) {
+        SheetReader sheet = open();
+        skipToTitles(sheet);
+
+        subscriber.onSubscribe(new Subscription() {
+            private boolean completed = false;
+            private int index = 0;
+
+            @Override
+            public void request(long count) {
+                for (int i = 0; i < count && index < rows; i++) {
+                    subscriber.onNext(getRow(sheet.next()));
+                    index++;
+                }
+
+                if (index >= rows && !completed) {
+                    completed = true;
+                    sheet.close();
+                    subscriber.onComplete();
+                }
+            }
+
+            @Override
+            public void cancel() {
+                sheet.close();
+            }
+        });
+    }
+
+    @Override
+    public int getNumberOfElements() {
+        return rows;
+    }
+
+    @Override
+    public Map<String, ColumnType> getColumnTypes() {
+        Map<String, ColumnType> columns = new LinkedHashMap<>();
+        if (!DataTypes.isCompatible() && types != null) {
+            for (int i = 0; i < titles.length; i++) {
+                columns.put(titles[i], types[i]);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Skips all rows until the titles.
+     *
+     * @param sheet the reader to skip rows in.
+     * @return the row that contains the titles.
+     */
+    private SheetRow skipToTitles(SheetReader sheet) {
+        SheetRow titles = sheet.next();
+
+        while (titles != null && titles.index < offset) {
+            titles = sheet.next();
+        }
+
+        if (titles == null || titles.index != offset) {
+            sheet.close();
+            throw new ParserException(
+                    String.format("Expected column titles on row %d in file %s.", offset + 1, fileName));
+        }
+        return titles;
+    }
+
+    /**
+     * @param row the row that contains the column titles.
+     * @return the titles of all consecutive columns from the first column that has a title.
+     */
+    private String[] getTitles(SheetRow row) {
+        List<String> titles = new ArrayList<>();
+
+        for (SheetCell cell : row.cells) {
+            Object value = getValue(cell, ColumnType.STRING);
+
+            if (cell.column == titles.size() && value != null && value.toString().length() > 0) {
+                titles.add(value.toString());
+            } else {
+                break;
+            }
+        }
+        return titles.toArray(new String[0]);
+    }
+
+    /**
+     * @param row the row to convert.
+     * @return a jsonobject that maps titles to the column values.
+     */
+    private JsonObject getRow(SheetRow row) {
+        JsonObject json = new JsonObject();
+
+        for (SheetCell cell : row.cells) {
+            if (cell.column < titles.length) {
+                Object value = getValue(cell, (DataTypes.isCompatible()) ? null : types[cell.column]);
+
+                // avoid indexing null or empty string.
+                if (value != null && !(value.toString().length() == 0)) {
+                    json.put(titles[cell.column], value);
+                }
+            }
+        }
+
+        if (sheet != null) {
+            json.put(SHEET, sheet);
+        }
+        return json;
+    }
+
+    /**
+     * @param cell the cell to detect the type of.
+     * @return the type of the cell value.
+     */
+    private ColumnType getType(SheetCell cell) {
+        switch (cell.type) {
+            case BOOLEAN:
+                return ColumnType.BOOLEAN;
+            case STRING:
+                return ColumnType.of(DataTypes.parseString(cell.text));
+            case NUMERIC:
+                if (isDate(cell)) {
+                    return ColumnType.DATE;
+                } else {
+                    return ColumnType.of(DataTypes.parseNumeric(cell.number));
+                }
+            default:
+                return ColumnType.EMPTY;
+        }
+    }
+
+    /**
+     * Reads the value of a cell as the type of its column.
+     *
+     * @param cell the cell to read the value of.
+     * @param type the type of the column that the cell is in, if null the type is detected.
+     * @return the value of the cell or null if the cell has no supported value.
+     */
+    private Object getValue(SheetCell cell, ColumnType type) {
+        switch (cell.type) {
+            case BOOLEAN:
+                return (type == ColumnType.STRING) ? Boolean.toString(cell.bool).toUpperCase() : cell.bool;
+            case STRING:
+                if (type == ColumnType.STRING) {
+                    return cell.text;
+                } else {
+                    Object value = DataTypes.parseString(cell.text);
+                    return (type == ColumnType.DOUBLE && value instanceof Number) ?
+                            ((Number) value).doubleValue() : value;
+                }
+            case NUMERIC:
+                if (isDate(cell)) {
+                    return DateUtil.getJavaDate(cell.number, date1904).toInstant().toString();
+                } else if (type == ColumnType.STRING) {
+                    return formatter.formatRawCellContents(cell.number, cell.format,
+                            (cell.formatString == null) ? GENERAL : cell.formatString);
+                } else if (type == ColumnType.LONG) {
+                    return (long) cell.number;
+                } else if (type == ColumnType.DOUBLE) {
+                    return cell.number;
+                } else {
+                    return DataTypes.parseNumeric(cell.number);
+                }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Checks if the cell is formatted as a date, the result for each format is cached
+     * as parsing the format string is expensive.
+     *
+     * @param cell a numeric cell.
+     * @return true if the cell is formatted as a date.
+     */
+    private boolean isDate(SheetCell cell) {
+        if (cell.formatString == null) {
+            return false;
+        }
+
+        Boolean date = dateFormats.get(cell.format);
+        if (date == null) {
+            date = DateUtil.isADateFormat(cell.format, cell.formatString);
+            dateFormats.put(cell.format, date);
+        }
+        return date && DateUtil.isValidExcelDate(cell.number);
+    }
+
+    /**
+     * Reads the rows of a sheet in order, rows that have no cells may be skipped.
+     */
+    protected interface SheetReader extends AutoCloseable {
+
+        /**
+         * @return the next row in the sheet or null if there are no more rows.
+         */
+        SheetRow next();
+
+        @Override
+        void close();
+    }
+
+    /**
+     * A cell with a value that is decoded from the file but not yet converted.
+     */
+    protected static class SheetCell {
+        int column;
+        CellType type = CellType.BLANK;
+        boolean bool;
+        String text;
+        double number;
+        int format;
+        String formatString;
+
+        void setBoolean(boolean value) {
+            this.type = CellType.BOOLEAN;
+            this.bool = value;
+        }
+
+        void setText(String value) {
+            this.type = CellType.STRING;
+            this.text = value;
+        }
+
+        void setNumber(double value, int format, String formatString) {
+            this.type = CellType.NUMERIC;
+            this.number = value;
+            this.format = format;
+            this.formatString = formatString;
+        }
+    }
+
+    /**
+     * A row with the cells that are present in the sheet, ordered by column.
+     * The cells may be reused when the row is reused for the next row.
+     */
+    protected static class SheetRow {
+        final List<SheetCell> cells = new ArrayList<>();
+        private final List<SheetCell> pool = new ArrayList<>();
+        int index;
+
+        SheetRow(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Clears the cells of the row so that it can be used for another row.
+         *
+         * @param index the index of the row that is read next.
+         */
+        void reset(int index) {
+            this.index = index;
+            this.cells.clear();
+        }
+
+        /**
+         * @param column the column of the cell.
+         * @return a blank cell that is added to the row.
+         */
+        SheetCell add(int column) {
+            if (pool.size() == cells.size()) {
+                pool.add(new SheetCell());
+            }
+            SheetCell cell = pool.get(cells.size());
+            cell.column = column;
+            cell.type = CellType.BLANK;
+            cell.formatString = null;
+            cells.add(cell);
+            return cell;
+        }
+    }
+}
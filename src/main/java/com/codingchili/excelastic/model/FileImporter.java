@@ -0,0 +1,268 @@
+package com.codingchili.excelastic.model;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.eventbus.DeliveryOptions;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import static com.codingchili.excelastic.model.Configuration.INDEXING_ELASTICSEARCH;
+import static com.codingchili.excelastic.model.Configuration.INDEXING_LOCAL;
+import static com.codingchili.excelastic.model.ElasticWriter.INDEXING_TIMEOUT;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * Parses files and submits them for indexing.
+ * <p>
+ * When sheets are selected in the import event each sheet is parsed on a worker thread
+ * and all sheets are indexed at the same time, after all sheets are successfully parsed.
+ * <p>
+ * When the event bus is clustered files are not parsed by this node, the file is parsed and
+ * validated from its location by the node that indexes it. Streamed files are always indexed
+ * by the local node.
+ */
+public class FileImporter {
+    private static final String INDEX_SEPARATOR = "-";
+    private static final String PARSER_POOL = "excelastic-parser";
+    private WorkerExecutor parsers;
+    private Vertx vertx;
+
+    public FileImporter(Vertx vertx) {
+        this.vertx = vertx;
+        // files are parsed on a bounded pool so that parsing does not starve the shared worker pool.
+        this.parsers = vertx.createSharedWorkerExecutor(PARSER_POOL, Configuration.getMaxParsers());
+    }
+
+    /**
+     * Parses and imports the given file.
+     *
+     * @param event         the import event - contains information like index and mapping to use.
+     * @param localFileName the file on disk to import.
+     * @param fileName      the original name of the file, used to find a parser.
+     * @return a future completed with the number of imported rows when all rows are indexed.
+     */
+    public Future<Integer> importFile(ImportEvent event, String localFileName, String fileName) {
+        Future<List<String>> sheets = Future.future();
+
+        parsers.executeBlocking(blocking -> {
+            try {
+                blocking.complete(getSheets(event, localFileName, fileName));
+            } catch (Throwable e) {
+                blocking.fail(e);
+            }
+        }, false, sheets);
+
+        return sheets.compose(names -> {
+            List<Future> parsed = new ArrayList<>();
+
+            if (names.isEmpty()) {
+                parsed.add(parse(event, localFileName, fileName, null));
+            } else {
+                for (String sheet : names) {
+                    parsed.add(parse(getEventBySheet(event, sheet), localFileName, fileName, sheet));
+                }
+            }
+
+            return CompositeFuture.join(parsed).recover(e -> {
+                // release the sheets that was parsed when any sheet fails.
+                parsed.stream().filter(Future::succeeded)
+                        .map(future -> ((ImportEvent) future.result()).getParser())
+                        .filter(Objects::nonNull)
+                        .forEach(FileParser::free);
+                return Future.failedFuture(e);
+            }).compose(all -> index(all.list()));
+        });
+    }
+
+    /**
+     * Imports the rows of a streaming parser while they are parsed, the rows are not
+     * validated before the import starts.
+     *
+     * @param event  the import event - contains information like index and mapping to use.
+     * @param parser a parser that reads the file from a stream, see {@link FileParser#isStreaming()}.
+     * @return a future completed with the number of imported rows when all rows are indexed.
+     */
+    public Future<Integer> importStream(ImportEvent event, FileParser parser) {
+        parser.initialize();
+        event.setParser(parser);
+        return index(event);
+    }
+
+    /**
+     * @return the names of the sheets to import or empty if the file is imported without selecting a sheet.
+     */
+    private List<String> getSheets(ImportEvent event, String localFileName, String fileName)
+            throws FileNotFoundException {
+        if (event.getSheets().isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        FileParser parser = ParserFactory.getByFilename(fileName);
+
+        if (parser instanceof WorkbookParser) {
+            try {
+                parser.setFileData(localFileName, event.getOffset(), fileName);
+                List<String> sheets = ((WorkbookParser) parser).getSheetNames();
+
+                if (event.getSheets().contains(ImportEvent.ALL_SHEETS)) {
+                    return sheets;
+                } else {
+                    for (String sheet : event.getSheets()) {
+                        if (!sheets.contains(sheet)) {
+                            throw new ParserException(
+                                    String.format("Sheet '%s' was not found in file %s.", sheet, fileName));
+                        }
+                    }
+                    return event.getSheets();
+                }
+            } finally {
+                parser.free();
+            }
+        } else {
+            throw new ParserException(String.format("File %s does not contain any sheets.", fileName));
+        }
+    }
+
+    /**
+     * @param event the import event to import the sheet with.
+     * @param sheet the name of the sheet.
+     * @return a copy of the import event for the given sheet.
+     */
+    private ImportEvent getEventBySheet(ImportEvent event, String sheet) {
+        ImportEvent copy = event.copy();
+
+        if (event.getIndexBySheet()) {
+            // index names must be lowercase and may not contain some special characters.
+            copy.setIndex(event.getIndex() + INDEX_SEPARATOR +
+                    sheet.toLowerCase().replaceAll("[^a-z0-9_\\-]+", "_"));
+        }
+        return copy;
+    }
+
+    /**
+     * @param sheet the name of the sheet to parse or null to parse the file without selecting a sheet.
+     * @return a future completed with the given event when the file is parsed, when clustered the
+     * event is completed without a parser as the file is parsed by the node that indexes it.
+     */
+    private Future<ImportEvent> parse(ImportEvent event, String localFileName, String fileName, String sheet) {
+        event.setFile(localFileName).setFileName(fileName).setSheet(sheet);
+
+        if (Configuration.isClustered()) {
+            // avoids parsing the file twice and holding a parser while another node indexes.
+            return Future.succeededFuture(event);
+        } else {
+            return parse(event);
+        }
+    }
+
+    /**
+     * Parses the file at the location of the event on a worker thread and sets the parser of
+     * the event, used to parse the file of an event that was received from another node.
+     *
+     * @param event the event to parse the file of.
+     * @return a future completed with the given event when the file is parsed.
+     */
+    public Future<ImportEvent> parse(ImportEvent event) {
+        Future<ImportEvent> future = Future.future();
+
+        parsers.executeBlocking(blocking -> {
+            FileParser parser = ParserFactory.getByFilename(event.getFileName());
+            try {
+                parser.setFileData(event.getFile(), event.getOffset(), event.getFileName());
+
+                if (event.getSheet() != null) {
+                    ((WorkbookParser) parser).setSheet(event.getSheet());
+                }
+
+                parser.initialize();
+                event.setParser(parser);
+                blocking.complete(event);
+            } catch (Throwable e) {
+                parser.free();
+                blocking.fail(e);
+            }
+        }, false, future);
+
+        return future;
+    }
+
+    /**
+     * Submits the parsed events for indexing. When multiple sheets are imported into the same
+     * index that is cleared the first sheet is indexed before the others, to not clear the index
+     * while the other sheets are indexed.
+     *
+     * @param events the events to index, the events have a parser unless clustered.
+     * @return a future completed with the total number of imported rows.
+     */
+    private Future<Integer> index(List<ImportEvent> events) {
+        ImportEvent first = events.get(0);
+
+        if (events.size() > 1 && first.getClearExisting() && !first.getIndexBySheet()) {
+            List<ImportEvent> others = events.subList(1, events.size());
+            others.forEach(event -> event.setClearExisting(false));
+
+            return index(first).compose(imported -> indexAll(others).map(rest -> imported + rest));
+        } else {
+            return indexAll(events);
+        }
+    }
+
+    private Future<Integer> indexAll(List<ImportEvent> events) {
+        List<Future> indexed = new ArrayList<>();
+        events.forEach(event -> indexed.add(index(event)));
+
+        return CompositeFuture.join(indexed).map(all -> {
+            int imported = 0;
+            for (int i = 0; i < all.size(); i++) {
+                imported += all.<Integer>resultAt(i);
+            }
+            return imported;
+        });
+    }
+
+    /**
+     * Submits the event for indexing, the parser of the event is released when indexing completes.
+     * Events without a parser are parsed by the writer that receives them.
+     *
+     * @param event the event to index.
+     * @return a future completed with the number of indexed rows.
+     */
+    private Future<Integer> index(ImportEvent event) {
+        Future<Integer> future = Future.future();
+        Optional<FileParser> parser = Optional.ofNullable(event.getParser());
+
+        if (event.isCancelled()) {
+            parser.ifPresent(FileParser::free);
+            return Future.failedFuture(new ImportCancelledException(event.getIndex()));
+        }
+
+        // streams can only be read by this node, files may be indexed by any node in the cluster.
+        String address = (event.getFile() == null) ? INDEXING_LOCAL : INDEXING_ELASTICSEARCH;
+
+        vertx.eventBus().send(address, event, getDeliveryOptions(), reply -> {
+            parser.ifPresent(FileParser::free);
+
+            if (reply.succeeded()) {
+                // the writer replies with the number of items that was indexed.
+                Object indexed = reply.result().body();
+                future.complete((indexed instanceof Integer) ? (Integer) indexed :
+                        parser.map(FileParser::getNumberOfElements).orElse(0));
+            } else {
+                future.fail(reply.cause());
+            }
+        });
+        return future;
+    }
+
+    private DeliveryOptions getDeliveryOptions() {
+        return new DeliveryOptions().setSendTimeout(INDEXING_TIMEOUT);
+    }
+}
@@ -4,6 +4,7 @@ import io.vertx.core.json.JsonObject;
 import org.reactivestreams.Publisher;
 
 import java.io.FileNotFoundException;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -39,6 +40,28 @@ public interface FileParser extends Publisher<JsonObject> {
      */
     int getNumberOfElements();
 
+    /**
+     * @return true if the rows are parsed while they are imported, the number of elements
+     * is then not known until the parser completes.
+     */
+    default boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * @param items the number of items that has been imported.
+     * @return the progress of the import in percent.
+     */
+    default float getProgress(int items) {
+        return (items * 1.0f / getNumberOfElements()) * 100;
+    }
+
+    /**
+     * @return the type of each column by title, detected when the file was initialized.
+     * Empty if the types are detected for each value, see {@link DataTypes#isCompatible()}.
+     */
+    Map<String, ColumnType> getColumnTypes();
+
 
     /**
      * Releases any resources associated with the FileParser.
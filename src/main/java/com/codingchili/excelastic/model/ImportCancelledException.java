@@ -0,0 +1,16 @@
+package com.codingchili.excelastic.model;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * Thrown when an import fails because it was cancelled.
+ */
+public class ImportCancelledException extends RuntimeException {
+
+    /**
+     * @param index the index that the cancelled import was importing into.
+     */
+    public ImportCancelledException(String index) {
+        super(String.format("The import into index '%s' was cancelled.", index));
+    }
+}
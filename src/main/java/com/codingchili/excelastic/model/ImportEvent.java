@@ -1,12 +1,16 @@
 package com.codingchili.excelastic.model;
 
 import io.vertx.core.MultiMap;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.codingchili.excelastic.controller.Website.UPLOAD_ID;
-import static com.codingchili.excelastic.model.ExcelParser.INDEX;
 
 /**
  * @author Robin Duda
@@ -14,21 +18,51 @@ import static com.codingchili.excelastic.model.ExcelParser.INDEX;
  * Contains information about an import request.
  */
 public class ImportEvent {
+    public static final String INDEX = "index";
+    public static final String ALL_SHEETS = "*";
+    public static final int MIN_PRIORITY = -100;
+    public static final int MAX_PRIORITY = 100;
+    public static final String ALL_COLUMNS = "*";
     private static final String ARG_CLEAR = "--clear";
     private static final String ARG_OFFSET = "--offset";
     private static final String ARG_MAPPING = "--mapping";
     private static final String ARG_PIPELINE = "--pipeline";
+    private static final String ARG_SHEETS = "--sheets";
+    private static final String ARG_INDEX_BY_SHEET = "--index-by-sheet";
+    private static final String ARG_FAST_LOAD = "--fast-load";
+    private static final String ARG_ID = "--id";
+    private static final String ARG_CREATE = "--create";
     private static final String OFFSET = "offset";
     private static final String MAPPING = "mapping";
     private static final String PIPELINE = "pipeline";
     private static final String OPTIONS = "options";
     private static final String CLEAR = "clear";
+    private static final String SHEETS = "sheets";
+    private static final String INDEX_BY_SHEET = "indexBySheet";
+    private static final String FAST_LOAD = "fastLoad";
+    private static final String ID_COLUMNS = "idColumns";
+    private static final String CREATE = "create";
+    private static final String PRIORITY = "priority";
+    private static final String CANCELLED = "cancelled";
+    private static final String FILE = "file";
+    private static final String FILE_NAME = "fileName";
+    private static final String SHEET = "sheet";
     private FileParser parser;
     private Boolean clearExisting;
+    private Boolean indexBySheet = false;
+    private Boolean fastLoad = false;
+    private Boolean create = false;
+    private List<String> sheets = new ArrayList<>();
+    private List<String> idColumns = new ArrayList<>();
+    private AtomicBoolean cancelled = new AtomicBoolean(false);
+    private int priority = 0;
     private String mapping;
     private String pipeline;
     private String index;
     private String uploadId;
+    private String file;
+    private String fileName;
+    private String sheet;
     private int offset;
 
     /**
@@ -42,9 +76,15 @@ public class ImportEvent {
                 .setIndex(params.get(INDEX))
                 .setMapping(getMappingByParams(params))
                 .setPipeline(params.get(PIPELINE))
-                .setClearExisting(params.get(OPTIONS).equals(CLEAR))
+                .setClearExisting(CLEAR.equals(params.get(OPTIONS)))
                 .setUploadId(params.get(UPLOAD_ID))
-                .setOffset(Integer.parseInt(params.get(OFFSET)));
+                .setSheets(getListByValue(params.get(SHEETS)))
+                .setIndexBySheet(params.contains(INDEX_BY_SHEET))
+                .setFastLoad(params.contains(FAST_LOAD))
+                .setIdColumns(getListByValue(params.get(ID_COLUMNS)))
+                .setCreate(params.contains(CREATE))
+                .setPriority(getPriorityByParams(params))
+                .setOffset(getOffsetByParams(params));
     }
 
     /**
@@ -59,10 +99,41 @@ public class ImportEvent {
                 .setOffset(getArgParamValue(args, ARG_OFFSET).map(Integer::parseInt).orElse(1))
                 .setMapping(getArgParamValue(args, ARG_MAPPING).orElse("default"))
                 .setPipeline(getArgParamValue(args, ARG_PIPELINE).orElse(""))
+                .setSheets(getListByValue(getArgParamValue(args, ARG_SHEETS).orElse(null)))
+                .setIndexBySheet(Arrays.asList(args).contains(ARG_INDEX_BY_SHEET))
+                .setFastLoad(Arrays.asList(args).contains(ARG_FAST_LOAD))
+                .setIdColumns(getListByValue(getArgParamValue(args, ARG_ID).orElse(null)))
+                .setCreate(Arrays.asList(args).contains(ARG_CREATE))
                 .setClearExisting(Arrays.asList(args).contains(ARG_CLEAR));
 
     }
 
+    /**
+     * Creates an import event from its json representation, the event has no parser.
+     *
+     * @param json an import event that was encoded with {@link #toJson()}.
+     * @return the created import event.
+     */
+    public static ImportEvent fromJson(JsonObject json) {
+        return new ImportEvent()
+                .setIndex(json.getString(INDEX))
+                .setMapping(json.getString(MAPPING))
+                .setPipeline(json.getString(PIPELINE))
+                .setClearExisting(json.getBoolean(CLEAR, false))
+                .setUploadId(json.getString(UPLOAD_ID))
+                .setSheets(getListByArray(json.getJsonArray(SHEETS)))
+                .setIndexBySheet(json.getBoolean(INDEX_BY_SHEET, false))
+                .setFastLoad(json.getBoolean(FAST_LOAD, false))
+                .setIdColumns(getListByArray(json.getJsonArray(ID_COLUMNS)))
+                .setCreate(json.getBoolean(CREATE, false))
+                .setPriority(json.getInteger(PRIORITY, 0))
+                .setCancelled(new AtomicBoolean(json.getBoolean(CANCELLED, false)))
+                .setFile(json.getString(FILE))
+                .setFileName(json.getString(FILE_NAME))
+                .setSheet(json.getString(SHEET))
+                .setOffset(json.getInteger(OFFSET, 1));
+    }
+
     private static Optional<String> getArgParamValue(String[] args, String argName) {
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals(argName)) {
@@ -75,7 +146,101 @@ public class ImportEvent {
     }
 
     private static String getMappingByParams(MultiMap params) {
-        return (params.get(MAPPING).length() == 0) ? "default" : params.get(MAPPING);
+        return (params.get(MAPPING) == null || params.get(MAPPING).isEmpty()) ? "default" : params.get(MAPPING);
+    }
+
+    private static int getOffsetByParams(MultiMap params) {
+        try {
+            return (params.contains(OFFSET)) ? Integer.parseInt(params.get(OFFSET).trim()) : 1;
+        } catch (NumberFormatException e) {
+            // the titles are expected on the first row unless a valid offset is given.
+            return 1;
+        }
+    }
+
+    private static int getPriorityByParams(MultiMap params) {
+        try {
+            if (params.contains(PRIORITY)) {
+                // parsed as a long so that values that overflow an int are clamped.
+                long priority = Long.parseLong(params.get(PRIORITY).trim());
+                return (int) Math.max(MIN_PRIORITY, Math.min(MAX_PRIORITY, priority));
+            } else {
+                return 0;
+            }
+        } catch (NumberFormatException e) {
+            // an invalid priority is not a reason to reject the upload.
+            return 0;
+        }
+    }
+
+    private static List<String> getListByValue(String value) {
+        List<String> values = new ArrayList<>();
+        if (value != null) {
+            for (String item : value.split(",")) {
+                if (!item.trim().isEmpty()) {
+                    values.add(item.trim());
+                }
+            }
+        }
+        return values;
+    }
+
+    private static List<String> getListByArray(JsonArray array) {
+        List<String> values = new ArrayList<>();
+        if (array != null) {
+            array.forEach(value -> values.add(value.toString()));
+        }
+        return values;
+    }
+
+    /**
+     * The parser is not included, the location of the file is used to parse the file
+     * again when the event is received by another node.
+     *
+     * @return the event as json.
+     */
+    public JsonObject toJson() {
+        return new JsonObject()
+                .put(INDEX, index)
+                .put(MAPPING, mapping)
+                .put(PIPELINE, pipeline)
+                .put(CLEAR, clearExisting)
+                .put(UPLOAD_ID, uploadId)
+                .put(SHEETS, new JsonArray(new ArrayList<>(sheets)))
+                .put(INDEX_BY_SHEET, indexBySheet)
+                .put(FAST_LOAD, fastLoad)
+                .put(ID_COLUMNS, new JsonArray(new ArrayList<>(idColumns)))
+                .put(CREATE, create)
+                .put(PRIORITY, priority)
+                .put(CANCELLED, isCancelled())
+                .put(FILE, file)
+                .put(FILE_NAME, fileName)
+                .put(SHEET, sheet)
+                .put(OFFSET, offset);
+    }
+
+    /**
+     * @return a copy of this import event, used to import sheets from the same file separately.
+     */
+    public ImportEvent copy() {
+        return new ImportEvent()
+                .setParser(parser)
+                .setClearExisting(clearExisting)
+                .setIndexBySheet(indexBySheet)
+                .setFastLoad(fastLoad)
+                .setCreate(create)
+                .setIdColumns(new ArrayList<>(idColumns))
+                .setPriority(priority)
+                .setCancelled(cancelled)
+                .setSheets(new ArrayList<>(sheets))
+                .setMapping(mapping)
+                .setPipeline(pipeline)
+                .setIndex(index)
+                .setUploadId(uploadId)
+                .setFile(file)
+                .setFileName(fileName)
+                .setSheet(sheet)
+                .setOffset(offset);
     }
 
     /**
@@ -94,6 +259,42 @@ public class ImportEvent {
         return this;
     }
 
+    /**
+     * @return the path of the file to import, null if the file is streamed.
+     */
+    public String getFile() {
+        return file;
+    }
+
+    public ImportEvent setFile(String file) {
+        this.file = file;
+        return this;
+    }
+
+    /**
+     * @return the original name of the file, used to find a parser.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    public ImportEvent setFileName(String fileName) {
+        this.fileName = fileName;
+        return this;
+    }
+
+    /**
+     * @return the name of the sheet to import or null to import the file without selecting a sheet.
+     */
+    public String getSheet() {
+        return sheet;
+    }
+
+    public ImportEvent setSheet(String sheet) {
+        this.sheet = sheet;
+        return this;
+    }
+
     public int getOffset() {
         return offset;
     }
@@ -139,6 +340,111 @@ public class ImportEvent {
         return this;
     }
 
+    /**
+     * @return the names of the sheets to import, if empty only the first sheet is imported.
+     * Contains {@link #ALL_SHEETS} if all sheets are to be imported.
+     */
+    public List<String> getSheets() {
+        return sheets;
+    }
+
+    public ImportEvent setSheets(List<String> sheets) {
+        this.sheets = sheets;
+        return this;
+    }
+
+    /**
+     * @return true if each sheet is imported into its own index, named by the index and the sheet.
+     */
+    public Boolean getIndexBySheet() {
+        return indexBySheet;
+    }
+
+    public ImportEvent setIndexBySheet(Boolean indexBySheet) {
+        this.indexBySheet = indexBySheet;
+        return this;
+    }
+
+    /**
+     * @return true if refresh and replicas of the index are disabled while importing, the
+     * settings are restored when the import completes.
+     */
+    public Boolean getFastLoad() {
+        return fastLoad;
+    }
+
+    public ImportEvent setFastLoad(Boolean fastLoad) {
+        this.fastLoad = fastLoad;
+        return this;
+    }
+
+    /**
+     * @return the columns that the _id of each document is derived from, if empty the ids
+     * are generated by elasticsearch. Contains {@link #ALL_COLUMNS} if the id is a hash of the row.
+     */
+    public List<String> getIdColumns() {
+        return idColumns;
+    }
+
+    public ImportEvent setIdColumns(List<String> idColumns) {
+        this.idColumns = idColumns;
+        return this;
+    }
+
+    /**
+     * @return true if documents are only created, documents with an _id that already
+     * exists in the index are skipped instead of overwritten.
+     */
+    public Boolean getCreate() {
+        return create;
+    }
+
+    public ImportEvent setCreate(Boolean create) {
+        this.create = create;
+        return this;
+    }
+
+    /**
+     * @return the priority of the import when it is queued, imports with a higher priority
+     * are started first.
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * @param priority the priority of the import, clamped to the range of
+     *                 {@link #MIN_PRIORITY} and {@link #MAX_PRIORITY}.
+     * @return fluent
+     */
+    public ImportEvent setPriority(int priority) {
+        this.priority = Math.max(MIN_PRIORITY, Math.min(MAX_PRIORITY, priority));
+        return this;
+    }
+
+    /**
+     * Cancels the import, the import fails when the parser or writer next checks for cancellation.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * @return true if the import has been cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * @param cancelled the cancellation flag, shared by the copies of an event.
+     * @return fluent.
+     */
+    private ImportEvent setCancelled(AtomicBoolean cancelled) {
+        this.cancelled = cancelled;
+        return this;
+    }
+
     public Optional<String> getPipeline() {
         return Optional.ofNullable(pipeline);
     }
@@ -3,11 +3,15 @@ package com.codingchili.excelastic.model;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.JsonObject;
 
 /**
  * @author Robin Duda
  * <p>
- * This codec is used to transfer a {@link ExcelParser} reference over the local event bus.
+ * This codec is used to transfer a {@link FileParser} reference over the local event bus.
+ * <p>
+ * Events that are sent to other nodes in a cluster are encoded as json with the location of
+ * the file instead of the parser, the file must be readable on the same path by the other node.
  */
 public class ImportEventCodec implements MessageCodec<ImportEvent, ImportEvent> {
 
@@ -21,13 +25,22 @@ public class ImportEventCodec implements MessageCodec<ImportEvent, ImportEvent>
     }
 
     @Override
-    public void encodeToWire(Buffer buffer, ImportEvent fileParser) {
-        throw new RuntimeException("Clustering not currently supported.");
+    public void encodeToWire(Buffer buffer, ImportEvent event) {
+        if (event.getFile() == null) {
+            throw new IllegalStateException(
+                    String.format("The import into index '%s' is streamed and cannot be sent to another node.",
+                            event.getIndex()));
+        }
+        Buffer json = event.toJson().toBuffer();
+        buffer.appendInt(json.length());
+        buffer.appendBuffer(json);
     }
 
     @Override
-    public ImportEvent decodeFromWire(int i, Buffer buffer) {
-        throw new RuntimeException("Clustering not currently supported.");
+    public ImportEvent decodeFromWire(int position, Buffer buffer) {
+        int length = buffer.getInt(position);
+        position += 4;
+        return ImportEvent.fromJson(new JsonObject(buffer.slice(position, position + length)));
     }
 
     @Override
@@ -0,0 +1,180 @@
+package com.codingchili.excelastic.model;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * An import that is scheduled by the {@link ImportScheduler}, contains the state and the
+ * throughput of the import.
+ */
+public class ImportJob {
+    private final List<Handler<ImportJob>> listeners = new ArrayList<>();
+    private final Future<Integer> result = Future.future();
+    private final Supplier<Future<Integer>> task;
+    private final ImportEvent event;
+    private final String fileName;
+    private final long order;
+    private final long queued = System.currentTimeMillis();
+    private State state = State.QUEUED;
+    private String error;
+    private long started;
+    private long finished;
+    private int items;
+    private float progress;
+
+    /**
+     * The states of an import job.
+     */
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    /**
+     * @param event    the event to import, the upload id of the event is the id of the job.
+     * @param fileName the name of the file that is imported.
+     * @param order    the order the job was submitted in, used to start jobs with the same
+     *                 priority in the order they were submitted.
+     * @param task     starts the import when the job is scheduled to run.
+     */
+    ImportJob(ImportEvent event, String fileName, long order, Supplier<Future<Integer>> task) {
+        this.event = event;
+        this.fileName = fileName;
+        this.order = order;
+        this.task = task;
+    }
+
+    /**
+     * @return the id of the job, which is the upload id of the import.
+     */
+    public String getId() {
+        return event.getUploadId();
+    }
+
+    /**
+     * @return the current state of the job.
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return true if the job is completed, failed or cancelled.
+     */
+    public boolean isFinished() {
+        return state != State.QUEUED && state != State.RUNNING;
+    }
+
+    /**
+     * @return the number of items imported per second while the job was running.
+     */
+    public long getThroughput() {
+        if (started == 0) {
+            return 0;
+        } else {
+            long elapsed = Math.max(((finished == 0) ? System.currentTimeMillis() : finished) - started, 1);
+            return (items * 1000L) / elapsed;
+        }
+    }
+
+    /**
+     * @param listener called when the job is started, on progress and when the job finishes.
+     */
+    public void addListener(Handler<ImportJob> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener a listener that was added with {@link #addListener(Handler)}.
+     */
+    public void removeListener(Handler<ImportJob> listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners() {
+        // listeners may remove themselves when notified.
+        new ArrayList<>(listeners).forEach(listener -> listener.handle(this));
+    }
+
+    /**
+     * @return the job as json, as listed by the jobs api.
+     */
+    public JsonObject toJson() {
+        return new JsonObject()
+                .put("id", getId())
+                .put("file", fileName)
+                .put("index", event.getIndex())
+                .put("state", state.name().toLowerCase())
+                .put("priority", event.getPriority())
+                .put("progress", progress)
+                .put("items", items)
+                .put("throughput", getThroughput())
+                .put("queued", queued)
+                .put("started", started)
+                .put("finished", finished)
+                .put("error", error);
+    }
+
+    /**
+     * @param progress the progress of the import in percent.
+     * @param items    the number of items that has been imported.
+     */
+    void onProgress(float progress, int items) {
+        this.progress = progress;
+        this.items = items;
+        notifyListeners();
+    }
+
+    /**
+     * Starts the import of the job.
+     *
+     * @return a future completed when the import completes.
+     */
+    Future<Integer> start() {
+        state = State.RUNNING;
+        started = System.currentTimeMillis();
+        notifyListeners();
+        return task.get();
+    }
+
+    /**
+     * @param imported the number of items that was imported.
+     */
+    void complete(int imported) {
+        state = State.COMPLETED;
+        finished = System.currentTimeMillis();
+        items = imported;
+        progress = 100.0f;
+        result.tryComplete(imported);
+        notifyListeners();
+    }
+
+    /**
+     * @param cause the error that failed the import.
+     */
+    void fail(Throwable cause) {
+        state = (event.isCancelled()) ? State.CANCELLED : State.FAILED;
+        finished = System.currentTimeMillis();
+        error = cause.getMessage();
+        result.tryFail(cause);
+        notifyListeners();
+    }
+
+    ImportEvent getEvent() {
+        return event;
+    }
+
+    long getOrder() {
+        return order;
+    }
+
+    Future<Integer> getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,150 @@
+package com.codingchili.excelastic.model;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+import static com.codingchili.excelastic.controller.Website.UPLOAD_ID;
+import static com.codingchili.excelastic.model.ElasticWriter.*;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * Limits the number of imports that are parsed and indexed at the same time, imports
+ * that are submitted when the limit is reached are queued.
+ * <p>
+ * Queued jobs are started by priority and in the order they were submitted, jobs with the
+ * same priority are started first in first out. The scheduler must be used from a single context.
+ */
+public class ImportScheduler {
+    private static final int FINISHED_JOBS = 100;
+    private final Queue<ImportJob> queue = new PriorityQueue<>(
+            Comparator.comparingInt((ImportJob job) -> -job.getEvent().getPriority())
+                    .thenComparingLong(ImportJob::getOrder));
+    private final Map<String, ImportJob> jobs = new LinkedHashMap<>();
+    private final int concurrency = Configuration.getMaxImportJobs();
+    private final Vertx vertx;
+    private long submitted = 0;
+    private int running = 0;
+
+    /**
+     * @param vertx the vertx instance to receive import progress from.
+     */
+    public ImportScheduler(Vertx vertx) {
+        this.vertx = vertx;
+        vertx.eventBus().<JsonObject>consumer(IMPORT_PROGRESS, message -> {
+            JsonObject progress = message.body();
+            ImportJob job = jobs.get(progress.getString(UPLOAD_ID));
+
+            if (job != null && progress.containsKey(ITEMS)) {
+                job.onProgress(progress.getFloat(PROGRESS), progress.getInteger(ITEMS));
+            }
+        });
+    }
+
+    /**
+     * Submits an import, the import is started when fewer than the maximum number of
+     * imports are running.
+     *
+     * @param event    the event to import, if the event has no upload id a job id is generated.
+     * @param fileName the name of the file that is imported.
+     * @param task     starts the import and returns a future that is completed when the import completes.
+     * @return a future completed with the number of imported items.
+     */
+    public Future<Integer> submit(ImportEvent event, String fileName, Supplier<Future<Integer>> task) {
+        String id = event.getUploadId();
+
+        if (id == null || (jobs.containsKey(id) && !jobs.get(id).isFinished())) {
+            event.setUploadId(UUID.randomUUID().toString());
+        }
+        ImportJob job = new ImportJob(event, fileName, submitted++, task);
+        jobs.remove(job.getId());
+        jobs.put(job.getId(), job);
+        queue.add(job);
+        next();
+        return job.getResult();
+    }
+
+    /**
+     * Cancels a job, a queued job is removed from the queue and a running job fails the next
+     * time the parser or writer checks for cancellation. The cancellation is published to
+     * all writers, as a running job may be indexed by another node in the cluster.
+     *
+     * @param id the id of the job to cancel.
+     * @return the cancelled job or empty if no job exists with the given id.
+     */
+    public Optional<ImportJob> cancel(String id) {
+        ImportJob job = jobs.get(id);
+
+        if (job != null && !job.isFinished()) {
+            job.getEvent().cancel();
+
+            if (queue.remove(job)) {
+                job.fail(new ImportCancelledException(job.getEvent().getIndex()));
+                evict();
+            } else {
+                vertx.eventBus().publish(IMPORT_CANCEL, id);
+            }
+        }
+        return Optional.ofNullable(job);
+    }
+
+    /**
+     * @param id the id of the job.
+     * @return the job with the given id, or empty if the job does not exist or has been evicted.
+     */
+    public Optional<ImportJob> get(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * @return the queued, running and the most recently finished jobs.
+     */
+    public List<ImportJob> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    private void next() {
+        while (running < concurrency && !queue.isEmpty()) {
+            ImportJob job = queue.poll();
+            Future<Integer> future;
+            running++;
+
+            try {
+                future = job.start();
+            } catch (Throwable e) {
+                future = Future.failedFuture(e);
+            }
+
+            future.setHandler(done -> {
+                running--;
+
+                if (done.succeeded()) {
+                    job.complete(done.result());
+                } else {
+                    job.fail(done.cause());
+                }
+                evict();
+                next();
+            });
+        }
+    }
+
+    /**
+     * Removes the oldest finished jobs when more than {@link #FINISHED_JOBS} jobs has finished.
+     */
+    private void evict() {
+        int finished = (int) jobs.values().stream().filter(ImportJob::isFinished).count();
+        Iterator<ImportJob> iterator = jobs.values().iterator();
+
+        while (finished > FINISHED_JOBS && iterator.hasNext()) {
+            if (iterator.next().isFinished()) {
+                iterator.remove();
+                finished--;
+            }
+        }
+    }
+}
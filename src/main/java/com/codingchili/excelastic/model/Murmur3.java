@@ -0,0 +1,136 @@
+package com.codingchili.excelastic.model;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * The 128-bit x64 variant of MurmurHash3, used to create document ids from the bytes of
+ * a row. The hash is not cryptographic, it is fast and has a low probability of collisions.
+ */
+public class Murmur3 {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    /**
+     * @param data   the bytes to hash.
+     * @param offset the index of the first byte to hash.
+     * @param length the number of bytes to hash.
+     * @return the 128-bit hash as 32 hexadecimal characters.
+     */
+    public static String hash128(byte[] data, int offset, int length) {
+        long h1 = 0;
+        long h2 = 0;
+        int blocks = length / 16;
+
+        for (int i = 0; i < blocks; i++) {
+            int block = offset + i * 16;
+            long k1 = getLong(data, block);
+            long k2 = getLong(data, block + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        int tail = offset + blocks * 16;
+
+        switch (length & 15) {
+            case 15:
+                k2 ^= (data[tail + 14] & 0xffL) << 48;
+            case 14:
+                k2 ^= (data[tail + 13] & 0xffL) << 40;
+            case 13:
+                k2 ^= (data[tail + 12] & 0xffL) << 32;
+            case 12:
+                k2 ^= (data[tail + 11] & 0xffL) << 24;
+            case 11:
+                k2 ^= (data[tail + 10] & 0xffL) << 16;
+            case 10:
+                k2 ^= (data[tail + 9] & 0xffL) << 8;
+            case 9:
+                k2 ^= (data[tail + 8] & 0xffL);
+                h2 ^= mixK2(k2);
+            case 8:
+                k1 ^= (data[tail + 7] & 0xffL) << 56;
+            case 7:
+                k1 ^= (data[tail + 6] & 0xffL) << 48;
+            case 6:
+                k1 ^= (data[tail + 5] & 0xffL) << 40;
+            case 5:
+                k1 ^= (data[tail + 4] & 0xffL) << 32;
+            case 4:
+                k1 ^= (data[tail + 3] & 0xffL) << 24;
+            case 3:
+                k1 ^= (data[tail + 2] & 0xffL) << 16;
+            case 2:
+                k1 ^= (data[tail + 1] & 0xffL) << 8;
+            case 1:
+                k1 ^= (data[tail] & 0xffL);
+                h1 ^= mixK1(k1);
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+
+        char[] hex = new char[32];
+        toHex(h1, hex, 0);
+        toHex(h2, hex, 16);
+        return new String(hex);
+    }
+
+    private static long getLong(byte[] data, int index) {
+        // little endian, as the reference implementation on x64.
+        return (data[index] & 0xffL)
+                | (data[index + 1] & 0xffL) << 8
+                | (data[index + 2] & 0xffL) << 16
+                | (data[index + 3] & 0xffL) << 24
+                | (data[index + 4] & 0xffL) << 32
+                | (data[index + 5] & 0xffL) << 40
+                | (data[index + 6] & 0xffL) << 48
+                | (data[index + 7] & 0xffL) << 56;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static void toHex(long value, char[] hex, int offset) {
+        for (int i = 15; i >= 0; i--) {
+            hex[offset + i] = HEX[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+}
@@ -14,7 +14,9 @@ public class ParserFactory {
     private static final Map<String, Supplier<FileParser>> parsers = new ConcurrentHashMap<>();
 
     static {
-        register(ExcelParser::new);
+        // excel files are streamed instead of loaded into memory.
+        register(XLSXStreamParser::new);
+        register(XLSStreamParser::new);
         register(CSVParser::new);
     }
 
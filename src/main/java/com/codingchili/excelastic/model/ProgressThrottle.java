@@ -0,0 +1,71 @@
+package com.codingchili.excelastic.model;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+import static com.codingchili.excelastic.model.ElasticWriter.IMPORT_PROGRESS;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * Limits the rate that the progress of a single import is published at. Progress that is
+ * published within the interval of the last update is coalesced, only the latest progress
+ * is published when the interval has passed.
+ * <p>
+ * The throttle must be used from a single context.
+ */
+public class ProgressThrottle {
+    private final Vertx vertx;
+    private final long interval;
+    private JsonObject pending;
+    private long last = 0;
+    private long timer = -1;
+
+    /**
+     * @param vertx    the vertx instance to publish progress on.
+     * @param interval the minimum number of milliseconds between published updates.
+     */
+    public ProgressThrottle(Vertx vertx, long interval) {
+        this.vertx = vertx;
+        this.interval = interval;
+    }
+
+    /**
+     * Publishes the progress if the interval has passed since the last update, otherwise
+     * the progress replaces any progress that is waiting to be published.
+     *
+     * @param progress the progress to publish on {@link ElasticWriter#IMPORT_PROGRESS}.
+     */
+    public void publish(JsonObject progress) {
+        pending = progress;
+
+        if (timer == -1) {
+            long delay = last + interval - System.currentTimeMillis();
+
+            if (delay <= 0) {
+                flush();
+            } else {
+                timer = vertx.setTimer(delay, done -> {
+                    timer = -1;
+                    flush();
+                });
+            }
+        }
+    }
+
+    /**
+     * Publishes the progress that is waiting without delay, used when the import finishes
+     * so that the last update is never lost.
+     */
+    public void flush() {
+        if (timer != -1) {
+            vertx.cancelTimer(timer);
+            timer = -1;
+        }
+        if (pending != null) {
+            last = System.currentTimeMillis();
+            vertx.eventBus().publish(IMPORT_PROGRESS, pending);
+            pending = null;
+        }
+    }
+}
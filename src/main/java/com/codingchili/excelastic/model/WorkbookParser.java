@@ -0,0 +1,28 @@
+package com.codingchili.excelastic.model;
+
+import java.util.List;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * A file parser for files that contains multiple sheets, by default only the first sheet is parsed.
+ */
+public interface WorkbookParser extends FileParser {
+    /**
+     * The field that contains the name of the sheet in each row when a sheet is selected.
+     */
+    String SHEET = "sheet";
+
+    /**
+     * @return the names of all sheets in the workbook in order, must be called after the file data is set.
+     */
+    List<String> getSheetNames();
+
+    /**
+     * Selects the sheet to parse, the name of the sheet is added to each row as {@link #SHEET}.
+     * Must be called after the file data is set and before the parser is initialized.
+     *
+     * @param sheet the name of the sheet to parse.
+     */
+    void setSheet(String sheet);
+}
@@ -0,0 +1,320 @@
+package com.codingchili.excelastic.model;
+
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.record.*;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.CellType;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * Parses xls files into json objects without loading the workbook into memory.
+ * <p>
+ * The records of the workbook are read one at a time and passed to a record listener,
+ * only the shared strings and the formats of the workbook are kept in memory. Cells are
+ * stored in blocks of rows, so a row is complete when a cell from a later row is read.
+ */
+public class XLSStreamParser extends ExcelStreamParser {
+    private static final String XML97 = ".xls";
+    private static final List<String> WORKBOOK_ENTRIES = Arrays.asList("Workbook", "WORKBOOK", "BOOK");
+    private POIFSFileSystem workbook;
+    private String entry;
+
+    @Override
+    public void setFileData(String localFileName, int offset, String fileName) throws FileNotFoundException {
+        File file = new File(localFileName);
+
+        if (file.exists()) {
+            try {
+                this.fileName = fileName;
+                this.workbook = new POIFSFileSystem(file, true);
+                this.entry = getWorkbookEntry(workbook);
+                this.offset = offset - 1; // convert excel row number to 0-based index.
+            } catch (IOException e) {
+                free();
+                throw new ParserException(e);
+            }
+        } else {
+            throw new FileNotFoundException(file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * @param workbook the file system of the workbook.
+     * @return the name of the entry that contains the workbook, older versions uses another name.
+     */
+    private String getWorkbookEntry(POIFSFileSystem workbook) {
+        Set<String> entries = workbook.getRoot().getEntryNames();
+
+        for (String entry : WORKBOOK_ENTRIES) {
+            if (entries.contains(entry)) {
+                return entry;
+            }
+        }
+        throw new ParserException(String.format("File %s does not contain a workbook.", fileName));
+    }
+
+    @Override
+    public Set<String> getSupportedFileExtensions() {
+        return new HashSet<>(Collections.singletonList(XML97));
+    }
+
+    @Override
+    public List<String> getSheetNames() {
+        try (RecordSheetReader reader = new RecordSheetReader()) {
+            return reader.readSheetNames();
+        }
+    }
+
+    @Override
+    protected SheetReader open() {
+        return new RecordSheetReader();
+    }
+
+    @Override
+    public void free() {
+        try {
+            if (workbook != null) {
+                workbook.close();
+            }
+        } catch (IOException e) {
+            logger.onError(e);
+        }
+    }
+
+    /**
+     * Reads the rows of the selected sheet in the workbook from records.
+     */
+    private class RecordSheetReader implements SheetReader, HSSFListener {
+        private final FormatTrackingHSSFListener formats = new FormatTrackingHSSFListener(this);
+        private final TreeMap<Integer, SheetRow> pending = new TreeMap<>();
+        private final Deque<SheetRow> ready = new ArrayDeque<>();
+        private final List<BoundSheetRecord> bounds = new ArrayList<>();
+        private RecordFactoryInputStream records;
+        private InputStream stream;
+        private SSTRecord strings;
+        private SheetCell formula;
+        private boolean done = false;
+        private int selected = -1;
+        private int sheets = 0;
+        private int depth = 0;
+
+        RecordSheetReader() {
+            try {
+                stream = workbook.createDocumentInputStream(entry);
+                records = new RecordFactoryInputStream(stream, false);
+            } catch (Exception e) {
+                close();
+                throw new ParserException(e);
+            }
+        }
+
+        /**
+         * Reads the records of the workbook until the first sheet.
+         *
+         * @return the names of the sheets in the order that they are stored.
+         */
+        List<String> readSheetNames() {
+            Record record;
+
+            do {
+                record = records.nextRecord();
+                if (record instanceof BoundSheetRecord) {
+                    bounds.add((BoundSheetRecord) record);
+                }
+            } while (record != null && !(record instanceof EOFRecord));
+
+            return getNames();
+        }
+
+        private List<String> getNames() {
+            List<String> names = new ArrayList<>();
+
+            // the sheets are not always declared in the same order as they are stored.
+            for (BoundSheetRecord bound : BoundSheetRecord.orderByBofPosition(bounds)) {
+                names.add(bound.getSheetname());
+            }
+            return names;
+        }
+
+        @Override
+        public SheetRow next() {
+            try {
+                while (ready.isEmpty() && !done) {
+                    Record record = records.nextRecord();
+
+                    if (record == null) {
+                        end();
+                    } else {
+                        formats.processRecord(record);
+                    }
+                }
+                return ready.poll();
+            } catch (RuntimeException e) {
+                throw (e instanceof ParserException) ? e : new ParserException(e);
+            }
+        }
+
+        @Override
+        public void processRecord(Record record) {
+            switch (record.getSid()) {
+                case BOFRecord.sid:
+                    if (depth == 0 && ((BOFRecord) record).getType() != BOFRecord.TYPE_WORKBOOK) {
+                        select((BOFRecord) record);
+                        sheets++;
+                    }
+                    depth++;
+                    break;
+                case BoundSheetRecord.sid:
+                    bounds.add((BoundSheetRecord) record);
+                    break;
+                case DateWindow1904Record.sid:
+                    date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+                    break;
+                case SSTRecord.sid:
+                    strings = (SSTRecord) record;
+                    break;
+                case EOFRecord.sid:
+                    if (isSelectedSheet()) {
+                        // skip reading the rest of the workbook.
+                        end();
+                    }
+                    depth--;
+                    break;
+                default:
+                    if (isSelectedSheet()) {
+                        processSheetRecord(record);
+                    }
+            }
+        }
+
+        /**
+         * Selects the sheet to read when the first sheet starts, if no sheet is selected
+         * the first worksheet is read.
+         *
+         * @param record the record that starts the sheet.
+         */
+        private void select(BOFRecord record) {
+            if (sheets == 0 && sheet != null) {
+                selected = getNames().indexOf(sheet);
+
+                if (selected == -1) {
+                    throw new ParserException(
+                            String.format("Sheet '%s' was not found in file %s.", sheet, fileName));
+                }
+            } else if (selected == -1 && sheet == null && record.getType() == BOFRecord.TYPE_WORKSHEET) {
+                selected = sheets;
+            }
+        }
+
+        /**
+         * @return true if the current record is in the selected sheet, charts embedded
+         * in the sheet are stored as nested streams and are skipped.
+         */
+        private boolean isSelectedSheet() {
+            return depth == 1 && sheets - 1 == selected;
+        }
+
+        private void processSheetRecord(Record record) {
+            if (record instanceof RowRecord) {
+                // rows are declared in blocks before the cells of the rows.
+                pending.computeIfAbsent(((RowRecord) record).getRowNumber(), SheetRow::new);
+            } else if (record instanceof DBCellRecord) {
+                // marks the end of a block of rows.
+                flush(Integer.MAX_VALUE);
+            } else if (record instanceof StringRecord) {
+                if (formula != null) {
+                    formula.setText(((StringRecord) record).getString());
+                    formula = null;
+                }
+            } else if (record instanceof MulRKRecord) {
+                for (NumberRecord number : RecordFactory.convertRKRecords((MulRKRecord) record)) {
+                    processCell(number);
+                }
+            } else if (record instanceof CellValueRecordInterface) {
+                processCell((CellValueRecordInterface) record);
+            }
+        }
+
+        private void processCell(CellValueRecordInterface record) {
+            SheetCell cell = getRow(record.getRow()).add(record.getColumn());
+
+            if (record instanceof LabelSSTRecord) {
+                cell.setText(strings.getString(((LabelSSTRecord) record).getSSTIndex()).getString());
+            } else if (record instanceof LabelRecord) {
+                cell.setText(((LabelRecord) record).getValue());
+            } else if (record instanceof NumberRecord) {
+                setNumber(cell, record, ((NumberRecord) record).getValue());
+            } else if (record instanceof RKRecord) {
+                setNumber(cell, record, ((RKRecord) record).getRKNumber());
+            } else if (record instanceof BoolErrRecord) {
+                if (((BoolErrRecord) record).isBoolean()) {
+                    cell.setBoolean(((BoolErrRecord) record).getBooleanValue());
+                }
+            } else if (record instanceof FormulaRecord) {
+                processFormula(cell, (FormulaRecord) record);
+            }
+        }
+
+        /**
+         * Uses the cached result of the formula as the value of the cell.
+         */
+        private void processFormula(SheetCell cell, FormulaRecord record) {
+            if (record.hasCachedResultString()) {
+                // the string is stored in the next record.
+                formula = cell;
+            } else {
+                CellType type = CellType.forInt(record.getCachedResultType());
+
+                if (type == CellType.BOOLEAN) {
+                    cell.setBoolean(record.getCachedBooleanValue());
+                } else if (type == CellType.NUMERIC) {
+                    setNumber(cell, record, record.getValue());
+                }
+            }
+        }
+
+        private void setNumber(SheetCell cell, CellValueRecordInterface record, double value) {
+            cell.setNumber(value, formats.getFormatIndex(record), formats.getFormatString(record));
+        }
+
+        /**
+         * @param index the index of the row that a cell was read from.
+         * @return the row with the given index, all rows before it are complete.
+         */
+        private SheetRow getRow(int index) {
+            flush(index);
+            return pending.computeIfAbsent(index, SheetRow::new);
+        }
+
+        /**
+         * @param index all rows before the given index are ready to be read.
+         */
+        private void flush(int index) {
+            Map<Integer, SheetRow> complete = pending.headMap(index);
+            ready.addAll(complete.values());
+            complete.clear();
+        }
+
+        private void end() {
+            flush(Integer.MAX_VALUE);
+            done = true;
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (stream != null) {
+                    stream.close();
+                }
+            } catch (IOException e) {
+                logger.onError(e);
+            }
+        }
+    }
+}
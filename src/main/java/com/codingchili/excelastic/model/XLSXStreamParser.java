@@ -0,0 +1,237 @@
+package com.codingchili.excelastic.model;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+
+import javax.xml.stream.*;
+import java.io.*;
+import java.util.*;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * Parses xlsx files into json objects without loading the workbook into memory.
+ * <p>
+ * The sheet is read as a stream of xml using the event model of POI, only the
+ * shared strings and the styles of the workbook are kept in memory. The sheet is
+ * read with a pull parser so that rows are only read when requested.
+ */
+public class XLSXStreamParser extends ExcelStreamParser {
+    private static final String OOXML = ".xlsx";
+    private static final String ROW = "row";
+    private static final String CELL = "c";
+    private static final String VALUE = "v";
+    private static final String INLINE_TEXT = "t";
+    private static final String SHEET_DATA = "sheetData";
+    private static final String TYPE_BOOLEAN = "b";
+    private static final String TYPE_SHARED_STRING = "s";
+    private static final String TYPE_INLINE_STRING = "inlineStr";
+    private static final String TYPE_FORMULA_STRING = "str";
+    private static final String TYPE_ERROR = "e";
+    // uploaded sheets may not reference a dtd or external entities.
+    private static final XMLInputFactory XML = createInputFactory();
+    private ReadOnlySharedStringsTable strings;
+    private StylesTable styles;
+    private XSSFReader reader;
+    private OPCPackage workbook;
+
+    @Override
+    public void setFileData(String localFileName, int offset, String fileName) throws FileNotFoundException {
+        File file = new File(localFileName);
+
+        if (file.exists()) {
+            try {
+                this.workbook = OPCPackage.open(file, PackageAccess.READ);
+                this.reader = new XSSFReader(workbook);
+                this.strings = new ReadOnlySharedStringsTable(workbook);
+                this.styles = reader.getStylesTable();
+                this.offset = offset - 1; // convert excel row number to 0-based index.
+                this.fileName = fileName;
+            } catch (Exception e) {
+                free();
+                throw new ParserException(e);
+            }
+        } else {
+            throw new FileNotFoundException(file.getAbsolutePath());
+        }
+    }
+
+    @Override
+    public Set<String> getSupportedFileExtensions() {
+        return new HashSet<>(Collections.singletonList(OOXML));
+    }
+
+    @Override
+    public List<String> getSheetNames() {
+        List<String> sheets = new ArrayList<>();
+        try {
+            XSSFReader.SheetIterator iterator = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (iterator.hasNext()) {
+                iterator.next().close();
+                sheets.add(iterator.getSheetName());
+            }
+        } catch (Exception e) {
+            throw new ParserException(e);
+        }
+        return sheets;
+    }
+
+    @Override
+    protected SheetReader open() {
+        return new XMLSheetReader();
+    }
+
+    @Override
+    public void free() {
+        if (workbook != null) {
+            // the package is read only: revert instead of close to not write to the file.
+            workbook.revert();
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Reads the rows of the selected sheet in the workbook from xml.
+     */
+    private class XMLSheetReader implements SheetReader {
+        private SheetRow row = new SheetRow(-1);
+        private XMLStreamReader xml;
+        private InputStream stream;
+
+        XMLSheetReader() {
+            try {
+                stream = getSheetData();
+                xml = XML.createXMLStreamReader(stream);
+            } catch (Exception e) {
+                close();
+                throw (e instanceof ParserException) ? (ParserException) e : new ParserException(e);
+            }
+        }
+
+        private InputStream getSheetData() throws Exception {
+            XSSFReader.SheetIterator iterator = (XSSFReader.SheetIterator) reader.getSheetsData();
+
+            while (iterator.hasNext()) {
+                InputStream data = iterator.next();
+
+                if (sheet == null || sheet.equals(iterator.getSheetName())) {
+                    return data;
+                } else {
+                    data.close();
+                }
+            }
+            throw new ParserException(String.format("Sheet '%s' was not found in file %s.", sheet, fileName));
+        }
+
+        @Override
+        public SheetRow next() {
+            try {
+                SheetCell cell = null;
+                String type = null;
+                String value = null;
+                int column = -1;
+
+                while (xml.hasNext()) {
+                    int event = xml.next();
+
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        switch (xml.getLocalName()) {
+                            case ROW:
+                                String number = xml.getAttributeValue(null, "r");
+                                row.reset((number == null) ? row.index + 1 : Integer.parseInt(number) - 1);
+                                column = -1;
+                                break;
+                            case CELL:
+                                String reference = xml.getAttributeValue(null, "r");
+                                column = (reference == null) ? column + 1 : new CellReference(reference).getCol();
+                                cell = row.add(column);
+                                cell.format = getStyleIndex(xml.getAttributeValue(null, "s"));
+                                type = xml.getAttributeValue(null, "t");
+                                value = null;
+                                break;
+                            case VALUE:
+                                value = xml.getElementText();
+                                break;
+                            case INLINE_TEXT:
+                                // inline strings may be split into several runs of text.
+                                String text = xml.getElementText();
+                                value = (value == null) ? text : value + text;
+                                break;
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        switch (xml.getLocalName()) {
+                            case CELL:
+                                setValue(cell, type, value);
+                                break;
+                            case ROW:
+                                return row;
+                            case SHEET_DATA:
+                                return null;
+                        }
+                    }
+                }
+                return null;
+            } catch (XMLStreamException e) {
+                throw new ParserException(e, row.index);
+            }
+        }
+
+        private int getStyleIndex(String style) {
+            return (style == null) ? 0 : Integer.parseInt(style);
+        }
+
+        /**
+         * Decodes the value of the cell, the style index of the cell is replaced with its number format.
+         *
+         * @param cell  the cell to set the value of, the format of the cell is the style index.
+         * @param type  the type of the value, or null if the value is a number.
+         * @param value the value as stored in the sheet.
+         */
+        private void setValue(SheetCell cell, String type, String value) {
+            if (value == null || TYPE_ERROR.equals(type)) {
+                return;
+            }
+
+            if (TYPE_BOOLEAN.equals(type)) {
+                cell.setBoolean("1".equals(value));
+            } else if (TYPE_SHARED_STRING.equals(type)) {
+                cell.setText(strings.getItemAt(Integer.parseInt(value)).getString());
+            } else if (TYPE_INLINE_STRING.equals(type) || TYPE_FORMULA_STRING.equals(type)) {
+                cell.setText(value);
+            } else {
+                XSSFCellStyle style = (styles == null) ? null : styles.getStyleAt(cell.format);
+
+                if (style == null) {
+                    cell.setNumber(Double.parseDouble(value), 0, null);
+                } else {
+                    cell.setNumber(Double.parseDouble(value), style.getDataFormat(), style.getDataFormatString());
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (xml != null) {
+                    xml.close();
+                }
+                if (stream != null) {
+                    stream.close();
+                }
+            } catch (XMLStreamException | IOException e) {
+                logger.onError(e);
+            }
+        }
+    }
+}
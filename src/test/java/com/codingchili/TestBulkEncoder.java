@@ -0,0 +1,109 @@
+package com.codingchili;
+
+import com.codingchili.excelastic.model.BulkEncoder;
+import com.codingchili.excelastic.model.ImportEvent;
+import com.codingchili.excelastic.model.Murmur3;
+import io.vertx.core.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests for the encoding of items into bulk request lines.
+ */
+public class TestBulkEncoder {
+    private static final String HEADER = "{\"index\":{\"_index\":\"test\"}}\n";
+
+    @Test
+    public void encodeSameAsJackson() {
+        JsonObject item = new JsonObject()
+                .put("text", "h\u00e5llo \"quoted\" \\ \n\t\u0001\u001f \ud83d\ude00 \u20ac")
+                .put("esc\"aped", "name")
+                .put("long", 12L)
+                .put("double", -1.5E-10)
+                .put("boolean", true);
+
+        String[] lines = encode(new BulkEncoder(HEADER), item);
+
+        Assert.assertEquals(HEADER.trim(), lines[0]);
+        Assert.assertEquals(item.encode(), lines[1]);
+        Assert.assertEquals(item, new JsonObject(lines[1]));
+    }
+
+    @Test
+    public void encodeReusesBuffer() {
+        BulkEncoder encoder = new BulkEncoder(HEADER);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 4096; i++) {
+            text.append('\u00e5');
+        }
+        JsonObject large = new JsonObject().put("text", text.toString());
+        JsonObject small = new JsonObject().put("text", "small");
+
+        Assert.assertEquals(large.encode(), encode(encoder, large)[1]);
+        Assert.assertEquals(small.encode(), encode(encoder, small)[1]);
+    }
+
+    @Test
+    public void encodeIdFromColumn() {
+        BulkEncoder encoder = new BulkEncoder(HEADER, Collections.singletonList("key"));
+        JsonObject item = new JsonObject().put("key", "a\"b").put("value", 1L);
+
+        String[] lines = encode(encoder, item);
+
+        Assert.assertEquals("a\"b", new JsonObject(lines[0]).getJsonObject("index").getString("_id"));
+        Assert.assertEquals("test", new JsonObject(lines[0]).getJsonObject("index").getString("_index"));
+        Assert.assertEquals(item.encode(), lines[1]);
+    }
+
+    @Test
+    public void encodeIdFromHash() {
+        BulkEncoder encoder = new BulkEncoder(HEADER, Collections.singletonList(ImportEvent.ALL_COLUMNS));
+        JsonObject first = new JsonObject().put("key", "a").put("value", 1L);
+        JsonObject second = new JsonObject().put("key", "a").put("value", 2L);
+
+        String id = getId(encode(encoder, first));
+
+        Assert.assertEquals(32, id.length());
+        Assert.assertEquals(id, getId(encode(encoder, first.copy())));
+        Assert.assertNotEquals(id, getId(encode(encoder, second)));
+        Assert.assertEquals(first.encode(), encode(encoder, first)[1]);
+    }
+
+    @Test
+    public void encodeIdFromColumns() {
+        BulkEncoder encoder = new BulkEncoder(HEADER, Arrays.asList("a", "b"));
+
+        // the hash must not be ambiguous when the values are concatenated.
+        String first = getId(encode(encoder, new JsonObject().put("a", "x,").put("b", "y").put("c", 1L)));
+        String second = getId(encode(encoder, new JsonObject().put("a", "x").put("b", ",y").put("c", 1L)));
+        String same = getId(encode(encoder, new JsonObject().put("a", "x,").put("b", "y").put("c", 2L)));
+
+        Assert.assertNotEquals(first, second);
+        Assert.assertEquals(first, same);
+    }
+
+    @Test
+    public void murmur3ReferenceHash() {
+        // reference values of MurmurHash3_x64_128 with seed 0.
+        Assert.assertEquals("00000000000000000000000000000000", hash(""));
+        Assert.assertEquals("e34bbc7bbc071b6c7a433ca9c49a9347", hash("The quick brown fox jumps over the lazy dog"));
+    }
+
+    private String hash(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return Murmur3.hash128(bytes, 0, bytes.length);
+    }
+
+    private String getId(String[] lines) {
+        return new JsonObject(lines[0]).getJsonObject("index").getString("_id");
+    }
+
+    private String[] encode(BulkEncoder encoder, JsonObject item) {
+        int length = encoder.encode(item);
+        return new String(encoder.getBytes(), 0, length, StandardCharsets.UTF_8).split("\n");
+    }
+}
@@ -0,0 +1,49 @@
+package com.codingchili;
+
+import com.codingchili.excelastic.model.BulkSizer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the sizing of bulk requests.
+ */
+public class TestBulkSizer {
+    private static final int MIN = 1000;
+    private static final int MAX = 4000;
+
+    @Test
+    public void growWhileThroughputIncreases() {
+        BulkSizer sizer = new BulkSizer(MIN, MAX);
+        sizer.onCompleted(sizer.getTarget(), 10);
+        Assert.assertTrue(sizer.getTarget() > MIN);
+
+        for (int i = 0; i < 16; i++) {
+            sizer.onCompleted(sizer.getTarget(), 10);
+        }
+        Assert.assertEquals(MAX, sizer.getTarget());
+    }
+
+    @Test
+    public void shrinkWhenThroughputDrops() {
+        BulkSizer sizer = new BulkSizer(MIN, MAX);
+        sizer.onCompleted(sizer.getTarget(), 10);
+        int grown = sizer.getTarget();
+
+        sizer.onCompleted(grown, 1000);
+        Assert.assertTrue(sizer.getTarget() < grown);
+    }
+
+    @Test
+    public void halveWhenRejected() {
+        BulkSizer sizer = new BulkSizer(MIN, MAX);
+        for (int i = 0; i < 16; i++) {
+            sizer.onCompleted(sizer.getTarget(), 10);
+        }
+        sizer.onRejected();
+        Assert.assertEquals(MAX / 2, sizer.getTarget());
+
+        sizer.onRejected();
+        sizer.onRejected();
+        Assert.assertEquals(MIN, sizer.getTarget());
+    }
+}
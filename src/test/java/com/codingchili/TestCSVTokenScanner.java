@@ -0,0 +1,100 @@
+package com.codingchili;
+
+import com.codingchili.excelastic.model.CSVTokenScanner;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Tests for the SWAR token scanner used by the CSV parser.
+ */
+public class TestCSVTokenScanner {
+    private static final byte[] ALPHABET = "abc ,\"\r\n\0\u00e5\u00e4\u00f61.".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void findTokens() {
+        ByteBuffer buffer = wrap("hello world,\"quoted\"\r\n");
+        Assert.assertEquals(11, CSVTokenScanner.next(buffer, 0, buffer.capacity()));
+        Assert.assertEquals(12, CSVTokenScanner.next(buffer, 12, buffer.capacity()));
+        Assert.assertEquals(19, CSVTokenScanner.next(buffer, 13, buffer.capacity()));
+        Assert.assertEquals(20, CSVTokenScanner.next(buffer, 20, buffer.capacity()));
+        Assert.assertEquals(21, CSVTokenScanner.next(buffer, 21, buffer.capacity()));
+    }
+
+    @Test
+    public void findNoTokens() {
+        ByteBuffer buffer = wrap("no tokens in this buffer");
+        Assert.assertEquals(buffer.capacity(), CSVTokenScanner.next(buffer, 0, buffer.capacity()));
+        Assert.assertEquals(4, CSVTokenScanner.next(buffer, 0, 4));
+    }
+
+    @Test
+    public void findQuote() {
+        ByteBuffer buffer = wrap("a,b,c,d,e,f\"g\0");
+        Assert.assertEquals(11, CSVTokenScanner.nextQuote(buffer, 0, buffer.capacity()));
+        Assert.assertEquals(13, CSVTokenScanner.nextQuote(buffer, 12, buffer.capacity()));
+    }
+
+    @Test
+    public void matchesScalar() {
+        Random random = new Random(0);
+        byte[] bytes = new byte[4096];
+
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        for (int i = 0; i < bytes.length; i++) {
+            Assert.assertEquals(
+                    CSVTokenScanner.nextScalar(buffer, i, bytes.length),
+                    CSVTokenScanner.next(buffer, i, bytes.length));
+        }
+    }
+
+    @Test
+    @Ignore("Run to compare the SWAR scanner with the scalar scanner.")
+    public void benchmarkScanner() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1048576);
+        byte[] row = "value 1,some longer text value,another value 12345.5,true\n"
+                .getBytes(StandardCharsets.UTF_8);
+
+        while (buffer.remaining() >= row.length) {
+            buffer.put(row);
+        }
+        int size = buffer.position();
+
+        for (int iteration = 0; iteration < 10; iteration++) {
+            long begin = System.nanoTime();
+            int tokens = 0;
+            for (int i = CSVTokenScanner.nextScalar(buffer, 0, size); i < size;
+                 i = CSVTokenScanner.nextScalar(buffer, i + 1, size)) {
+                tokens++;
+            }
+            long scalar = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            for (int i = CSVTokenScanner.next(buffer, 0, size); i < size;
+                 i = CSVTokenScanner.next(buffer, i + 1, size)) {
+                tokens--;
+            }
+            long swar = System.nanoTime() - begin;
+
+            Assert.assertEquals(0, tokens);
+            System.out.println(String.format("scalar %d MB/s, swar %d MB/s",
+                    throughput(size, scalar), throughput(size, swar)));
+        }
+    }
+
+    private static long throughput(int bytes, long nanos) {
+        return (bytes * 1000L) / Math.max(nanos / 1000, 1) / 1000;
+    }
+
+    private static ByteBuffer wrap(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
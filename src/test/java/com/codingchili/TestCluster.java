@@ -0,0 +1,147 @@
+package com.codingchili;
+
+import com.codingchili.excelastic.model.*;
+import com.hazelcast.config.Config;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.Timeout;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.spi.cluster.hazelcast.HazelcastClusterManager;
+import org.junit.*;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.codingchili.excelastic.model.ElasticWriter.INDEXING_TIMEOUT;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * Tests that imports are indexed by writers on other nodes in a cluster, the nodes of the
+ * cluster are started in the same process.
+ */
+@RunWith(VertxUnitRunner.class)
+public class TestCluster {
+    private static final String LOCALHOST = "127.0.0.1";
+    private static final int ROWS = 2;
+    private Vertx website;
+    private Vertx writer;
+
+    @Rule
+    public Timeout timeout = Timeout.seconds(60);
+
+    @Before
+    public void setUp(TestContext context) {
+        Async async = context.async();
+
+        clustered().compose(first -> {
+            website = first;
+            return clustered();
+        }).setHandler(context.asyncAssertSuccess(second -> {
+            writer = second;
+            // only the second node runs a writer, all imports must be indexed by the second node.
+            writer.deployVerticle(new ElasticWriter(), context.asyncAssertSuccess(deployed -> async.complete()));
+        }));
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        website.close(context.asyncAssertSuccess());
+        writer.close(context.asyncAssertSuccess());
+    }
+
+    private Future<Vertx> clustered() {
+        Future<Vertx> future = Future.future();
+        Config config = new Config();
+
+        // join the other nodes over tcp on the loopback interface instead of multicast.
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(true).addMember(LOCALHOST);
+        config.getNetworkConfig().getInterfaces().setEnabled(true).addInterface(LOCALHOST);
+
+        Vertx.clusteredVertx(new VertxOptions()
+                .setClusterManager(new HazelcastClusterManager(config))
+                .setClusterHost(LOCALHOST), clustered -> {
+            if (clustered.succeeded()) {
+                ImportEventCodec.registerOn(clustered.result());
+                future.complete(clustered.result());
+            } else {
+                future.fail(clustered.cause());
+            }
+        });
+        return future;
+    }
+
+    @Test
+    public void shouldEncodeEventToWire(TestContext context) {
+        ImportEventCodec codec = new ImportEventCodec();
+        Buffer buffer = Buffer.buffer().appendString("header");
+
+        codec.encodeToWire(buffer, new ImportEvent()
+                .setIndex("test-index")
+                .setMapping("test-mapping")
+                .setClearExisting(true)
+                .setUploadId("upload")
+                .setIdColumns(Arrays.asList("name", "integer"))
+                .setCreate(true)
+                .setFile(toPath(TestParser.TEST_CSV))
+                .setFileName("test.csv")
+                .setSheet("sheet")
+                .setOffset(TestParser.ROW_OFFSET));
+
+        ImportEvent event = codec.decodeFromWire("header".length(), buffer);
+        context.assertEquals("test-index", event.getIndex());
+        context.assertEquals("test-mapping", event.getMapping());
+        context.assertTrue(event.getClearExisting());
+        context.assertEquals("upload", event.getUploadId());
+        context.assertEquals(Arrays.asList("name", "integer"), event.getIdColumns());
+        context.assertTrue(event.getCreate());
+        context.assertEquals(toPath(TestParser.TEST_CSV), event.getFile());
+        context.assertEquals("test.csv", event.getFileName());
+        context.assertEquals("sheet", event.getSheet());
+        context.assertEquals(TestParser.ROW_OFFSET, event.getOffset());
+        context.assertNull(event.getParser());
+    }
+
+    @Test
+    public void shouldIndexOnOtherNode(TestContext context) {
+        Async async = context.async();
+        AtomicInteger indexed = new AtomicInteger();
+
+        writer.createHttpServer().requestHandler(request -> {
+            request.bodyHandler(body -> {
+                if (request.path().endsWith("/_bulk")) {
+                    indexed.addAndGet(body.toString().split("\n").length / 2);
+                }
+                request.response().end(new JsonObject()
+                        .put("version", new JsonObject().put("number", "6.0.0"))
+                        .put("errors", false).encode());
+            });
+        }).listen(Configuration.getElasticPort(), context.asyncAssertSuccess(listening -> {
+            // the event carries the location of the file, the parser is created by the writer.
+            website.eventBus().send(Configuration.INDEXING_ELASTICSEARCH, new ImportEvent()
+                    .setIndex("text-index")
+                    .setClearExisting(false)
+                    .setMapping("test-mapping")
+                    .setFile(toPath(TestParser.TEST_CSV))
+                    .setFileName("test.csv")
+                    .setOffset(TestParser.ROW_OFFSET),
+                    new DeliveryOptions().setSendTimeout(INDEXING_TIMEOUT), context.asyncAssertSuccess(reply -> {
+                        context.assertEquals(ROWS, reply.body());
+                        context.assertEquals(ROWS, indexed.get());
+                        async.complete();
+                    }));
+        }));
+    }
+
+    private static String toPath(String resource) {
+        return TestCluster.class.getResource(resource).getPath();
+    }
+}
@@ -2,14 +2,24 @@ package com.codingchili;
 
 import com.codingchili.excelastic.model.DataTypes;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 /**
  * Tests for the string-based data-type detection.
  */
 public class TestDataType {
+    private static final Predicate<String> floatPattern = Pattern.compile("^[0-9]+\\.[0-9]+$").asPredicate();
+    private static final Predicate<String> numberPattern = Pattern.compile("^[0-9]+$").asPredicate();
+    private static final Predicate<String> boolPattern = Pattern.compile("^(true|false)$").asPredicate();
+    private static final String[] VALUES = {"0", "007", "42", "1.50", "0.1", "123456789.123456789", "1.", ".5",
+            "1.2.3", "-1", "-1.5", "1e3", "1.5E-3", "-2.5e+2", "1e", "e5", "-", "--1", "true", "false",
+            "TRUE", "trueish", "meow", "12a", "9223372036854775807", "99999999999999999999"};
 
     @Test
     public void parseBoolean() {
@@ -27,6 +37,49 @@ public class TestDataType {
         Assert.assertEquals(TestDataType.<Double>bytes("1.57"), Double.valueOf(1.57));
     }
 
+    @Test
+    public void parseNegative() {
+        Assert.assertEquals(TestDataType.<Long>bytes("-3000"), Long.valueOf(-3000L));
+        Assert.assertEquals(TestDataType.<Double>bytes("-1.57"), Double.valueOf(-1.57));
+    }
+
+    @Test
+    public void parseExponent() {
+        Assert.assertEquals(TestDataType.<Double>bytes("1.5e3"), Double.valueOf(1500));
+        Assert.assertEquals(TestDataType.<Double>bytes("-2E-2"), Double.valueOf(-0.02));
+        Assert.assertEquals(TestDataType.<Double>bytes("1.2345678901234567e+300"), Double.valueOf(1.2345678901234567e300));
+    }
+
+    @Test
+    public void parseLargeIntegerAsString() {
+        Assert.assertEquals(TestDataType.<String>bytes("99999999999999999999"), "99999999999999999999");
+        Assert.assertEquals(TestDataType.<Long>bytes("9223372036854775807"), Long.valueOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void compatibleMatchesPatterns() {
+        DataTypes.setCompatible(true);
+        try {
+            for (String value : VALUES) {
+                if (value.length() <= 19) {
+                    Assert.assertEquals(value, parseWithPatterns(value), DataTypes.parseString(value));
+                }
+            }
+        } finally {
+            DataTypes.setCompatible(false);
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void compatibleLargeIntegerFails() {
+        DataTypes.setCompatible(true);
+        try {
+            DataTypes.parseString("99999999999999999999");
+        } finally {
+            DataTypes.setCompatible(false);
+        }
+    }
+
     @Test
     public void parseString() {
         Assert.assertEquals(TestDataType.<String>bytes("meow"), "meow");
@@ -42,6 +95,75 @@ public class TestDataType {
         Assert.assertEquals(DataTypes.parseNumeric(3.0), 3);
     }
 
+    @Test
+    public void parseSliceMatchesString() {
+        String[] values = {"0", "007", " 42 ", "1.50", "0.1", "123456789.123456789", "1.", ".5",
+                "1.2.3", "-1", "true", "false", "TRUE", " true", "trueish", "", "   ", "\u00e5\u00e4\u00f6"};
+
+        for (String value : values) {
+            byte[] bytes = ("," + value + ",").getBytes(StandardCharsets.UTF_8);
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+
+            Object expected = DataTypes.parseString(value.trim());
+            Assert.assertEquals(expected, DataTypes.parseBytes(ByteBuffer.wrap(bytes), 1, bytes.length - 2));
+            Assert.assertEquals(expected, DataTypes.parseBytes(direct, 1, bytes.length - 2));
+        }
+    }
+
+    @Test
+    @Ignore("Run to compare the classifier with the pattern based type detection.")
+    public void benchmarkTypes() {
+        String[] column = new String[100000];
+        for (int i = 0; i < column.length; i++) {
+            switch (i % 4) {
+                case 0:
+                    column[i] = Integer.toString(i);
+                    break;
+                case 1:
+                    column[i] = (i * 0.25) + "";
+                    break;
+                case 2:
+                    column[i] = (i % 3 == 0) + "";
+                    break;
+                default:
+                    column[i] = "value " + i;
+            }
+        }
+
+        for (int iteration = 0; iteration < 10; iteration++) {
+            long begin = System.nanoTime();
+            for (String value : column) {
+                parseWithPatterns(value);
+            }
+            long patterns = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            for (String value : column) {
+                DataTypes.parseString(value);
+            }
+            long classifier = System.nanoTime() - begin;
+
+            System.out.println(String.format("patterns %d ns/value, classifier %d ns/value",
+                    patterns / column.length, classifier / column.length));
+        }
+    }
+
+    /**
+     * The type detection used in previous versions.
+     */
+    private static Object parseWithPatterns(String value) {
+        if (value.length() > 0) {
+            if (numberPattern.test(value)) {
+                return Long.parseLong(value);
+            } else if (floatPattern.test(value)) {
+                return Double.parseDouble(value);
+            } else if (boolPattern.test(value)) {
+                return Boolean.parseBoolean(value);
+            }
+        }
+        return value;
+    }
+
     @SuppressWarnings("unchecked")
     private static <T> T bytes(String string) {
         return (T) DataTypes.parseBytes(string.getBytes(StandardCharsets.UTF_8));
@@ -0,0 +1,109 @@
+package com.codingchili;
+
+import com.codingchili.excelastic.model.Configuration;
+import com.codingchili.excelastic.model.ElasticNodes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for the selection of elasticsearch nodes.
+ */
+public class TestElasticNodes {
+    private static final List<String> ADDRESSES = Arrays.asList("es1:9201", "es2:9202", "es3:9203");
+
+    @Test
+    public void parseHostAndPort() {
+        List<ElasticNodes.Node> nodes = new ElasticNodes(Arrays.asList(
+                "es1:9201", "es2", "[::1]:9300", "[::1]", "::1"), ElasticNodes.Strategy.ROUND_ROBIN).getNodes();
+
+        assertNode(nodes.get(0), "es1", 9201);
+        assertNode(nodes.get(1), "es2", Configuration.getElasticPort());
+        assertNode(nodes.get(2), "::1", 9300);
+        assertNode(nodes.get(3), "::1", Configuration.getElasticPort());
+        assertNode(nodes.get(4), "::1", Configuration.getElasticPort());
+    }
+
+    @Test
+    public void selectNodesInTurn() {
+        ElasticNodes nodes = new ElasticNodes(ADDRESSES, ElasticNodes.Strategy.ROUND_ROBIN);
+        List<String> selected = new ArrayList<>();
+
+        for (int i = 0; i < 6; i++) {
+            selected.add(nodes.next().toString());
+        }
+        Assert.assertEquals(Arrays.asList("es1:9201", "es2:9202", "es3:9203",
+                "es1:9201", "es2:9202", "es3:9203"), selected);
+    }
+
+    @Test
+    public void selectNodeWithLeastOutstanding() {
+        ElasticNodes nodes = new ElasticNodes(ADDRESSES, ElasticNodes.Strategy.LEAST_OUTSTANDING);
+        List<ElasticNodes.Node> all = nodes.getNodes();
+        all.get(0).onRequest();
+        all.get(0).onRequest();
+        all.get(2).onRequest();
+
+        Assert.assertSame(all.get(1), nodes.next());
+        all.get(1).onRequest();
+        all.get(1).onRequest();
+        Assert.assertSame(all.get(2), nodes.next());
+
+        all.get(0).onResponse();
+        all.get(0).onResponse();
+        Assert.assertSame(all.get(0), nodes.next());
+    }
+
+    @Test
+    public void skipUnavailableNodes() {
+        ElasticNodes nodes = new ElasticNodes(ADDRESSES, ElasticNodes.Strategy.ROUND_ROBIN);
+        nodes.getNodes().get(1).setAvailable(false);
+
+        for (int i = 0; i < 6; i++) {
+            Assert.assertNotEquals("es2:9202", nodes.next().toString());
+        }
+        Assert.assertTrue(nodes.isAvailable());
+        Assert.assertEquals(2, nodes.getAvailable().size());
+    }
+
+    @Test
+    public void useAllNodesWhenNoneAreAvailable() {
+        ElasticNodes nodes = new ElasticNodes(ADDRESSES, ElasticNodes.Strategy.ROUND_ROBIN);
+        nodes.getNodes().forEach(node -> node.setAvailable(false));
+        List<String> selected = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            selected.add(nodes.next().toString());
+        }
+        Assert.assertFalse(nodes.isAvailable());
+        Assert.assertEquals(ADDRESSES, selected);
+
+        // a node is used again when it has responded to a poll.
+        nodes.getNodes().get(2).setAvailable(true);
+        Assert.assertEquals("es3:9203", nodes.next().toString());
+        Assert.assertEquals("es3:9203", nodes.next().toString());
+    }
+
+    @Test
+    public void addDiscoveredNodesOnce() {
+        ElasticNodes nodes = new ElasticNodes(Collections.singletonList("es1"), ElasticNodes.Strategy.ROUND_ROBIN);
+
+        Assert.assertFalse(nodes.add("es1:" + Configuration.getElasticPort()).isPresent());
+        ElasticNodes.Node discovered = nodes.add("es2:9202").orElseThrow(AssertionError::new);
+        Assert.assertFalse(nodes.add("es2:9202").isPresent());
+
+        // discovered nodes are not used until they pass a health check.
+        Assert.assertFalse(discovered.isAvailable());
+        Assert.assertEquals(2, nodes.getNodes().size());
+        Assert.assertEquals("es1", nodes.next().getHost());
+    }
+
+    private void assertNode(ElasticNodes.Node node, String host, int port) {
+        Assert.assertEquals(host, node.getHost());
+        Assert.assertEquals(port, node.getPort());
+    }
+}
@@ -0,0 +1,145 @@
+package com.codingchili;
+
+import com.codingchili.excelastic.model.*;
+import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * Tests the scheduling of import jobs.
+ */
+@RunWith(VertxUnitRunner.class)
+public class TestImportScheduler {
+    private static final String FILE = "test.csv";
+    private List<Future<Integer>> running = new ArrayList<>();
+    private List<String> started = new ArrayList<>();
+    private ImportScheduler scheduler;
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        scheduler = new ImportScheduler(vertx);
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void shouldLimitRunningJobs(TestContext context) {
+        int limit = Configuration.getMaxImportJobs();
+
+        for (int i = 0; i <= limit; i++) {
+            submit("job-" + i, 0);
+        }
+        context.assertEquals(limit, running.size());
+
+        running.get(0).complete(1);
+        context.assertEquals(limit + 1, running.size());
+        context.assertEquals(ImportJob.State.COMPLETED, getJob("job-0").getState());
+    }
+
+    @Test
+    public void shouldStartByPriority(TestContext context) {
+        fill();
+        submit("low", 0);
+        submit("high", 10);
+        submit("low-2", 0);
+
+        running.get(0).complete(1);
+        running.get(1).complete(1);
+        running.get(2).complete(1);
+
+        context.assertEquals("high", started.get(started.size() - 3));
+        context.assertEquals("low", started.get(started.size() - 2));
+        context.assertEquals("low-2", started.get(started.size() - 1));
+    }
+
+    @Test
+    public void shouldCancelQueuedJob(TestContext context) {
+        fill();
+        Future<Integer> result = submit("queued", 0);
+
+        scheduler.cancel("queued");
+
+        context.assertTrue(result.failed());
+        context.assertTrue(result.cause() instanceof ImportCancelledException);
+        context.assertEquals(ImportJob.State.CANCELLED, getJob("queued").getState());
+        context.assertFalse(started.contains("queued"));
+    }
+
+    @Test
+    public void shouldNotifyJobListeners(TestContext context) {
+        fill();
+        submit("listened", 0);
+        List<ImportJob.State> states = new ArrayList<>();
+        scheduler.get("listened").ifPresent(job -> job.addListener(update -> states.add(update.getState())));
+
+        running.get(0).complete(1);
+        running.get(running.size() - 1).complete(10);
+
+        context.assertEquals(2, states.size());
+        context.assertEquals(ImportJob.State.RUNNING, states.get(0));
+        context.assertEquals(ImportJob.State.COMPLETED, states.get(1));
+        context.assertEquals(10, getJob("listened").toJson().getInteger("items"));
+    }
+
+    @Test
+    public void shouldParsePriorityDefensively(TestContext context) {
+        context.assertEquals(0, getPriority("high"));
+        context.assertEquals(0, getPriority(""));
+        context.assertEquals(5, getPriority(" 5 "));
+        context.assertEquals(ImportEvent.MAX_PRIORITY, getPriority("99999999999"));
+        context.assertEquals(ImportEvent.MAX_PRIORITY, getPriority(Integer.toString(Integer.MAX_VALUE)));
+        context.assertEquals(ImportEvent.MIN_PRIORITY, getPriority(Integer.toString(Integer.MIN_VALUE)));
+    }
+
+    @Test
+    public void shouldParseOffsetDefensively(TestContext context) {
+        context.assertEquals(1, ImportEvent.fromParams(MultiMap.caseInsensitiveMultiMap()
+                .add("offset", "first")).getOffset());
+        context.assertEquals(5, ImportEvent.fromParams(MultiMap.caseInsensitiveMultiMap()
+                .add("offset", " 5")).getOffset());
+    }
+
+    private int getPriority(String priority) {
+        return ImportEvent.fromParams(MultiMap.caseInsensitiveMultiMap()
+                .add("priority", priority)).getPriority();
+    }
+
+    private void fill() {
+        for (int i = 0; i < Configuration.getMaxImportJobs(); i++) {
+            submit("running-" + i, 0);
+        }
+    }
+
+    private Future<Integer> submit(String id, int priority) {
+        ImportEvent event = new ImportEvent().setIndex("test").setUploadId(id).setPriority(priority);
+
+        return scheduler.submit(event, FILE, () -> {
+            Future<Integer> future = Future.future();
+            started.add(id);
+            running.add(future);
+            return future;
+        });
+    }
+
+    private ImportJob getJob(String id) {
+        return scheduler.getJobs().stream()
+                .filter(job -> job.getId().equals(id))
+                .findFirst().orElseThrow(IllegalStateException::new);
+    }
+}
@@ -1,8 +1,12 @@
 package com.codingchili;
 
 import com.codingchili.excelastic.model.*;
+import io.vertx.core.Vertx;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import org.junit.Ignore;
@@ -13,6 +17,8 @@ import org.reactivestreams.Subscription;
 
 import java.io.*;
 import java.text.DecimalFormat;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * @author Robin Duda
@@ -23,17 +29,18 @@ import java.text.DecimalFormat;
 public class TestParser {
     static final int ROW_OFFSET = 5;
     static final String TEST_XLS_FILE = "/test.xls";
+    static final String TEST_CSV = "/test.csv";
 
     private static final String TEST_XLSX_FILE = "/test.xlsx";
     private static final String TEST_INVALID_FILE = "/invalid.xlsx";
-    private static final String TEST_CSV = "/test.csv";
     private static final String BIG_CSV = "/big.csv";
     private static final String XLSX = ".xlsx";
+    private static final String TEST_SHEET = "Blad1";
 
     @Test
     public void failParseInvalid() throws Exception {
         try {
-            new ExcelParser().setFileData(toPath(TEST_INVALID_FILE), 5, XLSX);
+            new XLSXStreamParser().setFileData(toPath(TEST_INVALID_FILE), 5, XLSX);
             throw new Exception("Should fail for invalid bytes.");
         } catch (ParserException ignored) {
         }
@@ -54,12 +61,23 @@ public class TestParser {
         testParseFile(context, TEST_XLSX_FILE);
     }
 
+    @Test
+    public void testParseOOXMLStreaming(TestContext context) throws IOException {
+        testParseFile(context, new XLSXStreamParser(), TEST_XLSX_FILE);
+    }
+
     @Ignore("Google docs has dropped XLS exports.")
     @Test
     public void testParse2007(TestContext context) throws IOException {
         testParseFile(context, TEST_XLS_FILE);
     }
 
+    @Ignore("Google docs has dropped XLS exports.")
+    @Test
+    public void testParse2007Streaming(TestContext context) throws IOException {
+        testParseFile(context, new XLSStreamParser(), TEST_XLS_FILE);
+    }
+
     @Test
     public void testParseCSV(TestContext context) throws IOException {
         testParseFile(context, TEST_CSV);
@@ -76,6 +94,242 @@ public class TestParser {
     }
 
 
+    @Test
+    public void testParseCSVParallel(TestContext context) throws IOException {
+        CSVParser parser = new CSVParser();
+        parser.setParallel(true);
+        testParseFile(context, parser, TEST_CSV);
+    }
+
+    @Test
+    public void testParseCSVParallelChunksInOrder(TestContext context) throws IOException {
+        int rows = 10000;
+        File file = File.createTempFile("parallel", ".csv");
+        file.deleteOnExit();
+
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.println("row,name");
+            for (int i = 0; i < rows; i++) {
+                writer.println(i + ",name_" + i);
+            }
+        }
+
+        CSVParser parser = new CSVParser();
+        parser.setParallel(true);
+        parser.setFileData(file.getPath(), ROW_OFFSET, file.getName());
+        parser.initialize();
+        Async async = context.async();
+
+        parser.subscribe(new Subscriber<JsonObject>() {
+            int received = 0;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(rows);
+            }
+
+            @Override
+            public void onNext(JsonObject entry) {
+                context.assertEquals(received++, entry.getInteger("row"));
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                context.fail(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                context.assertEquals(rows, received);
+                parser.free();
+                async.complete();
+            }
+        });
+    }
+
+    @Test
+    public void testParseCSVStream(TestContext context) {
+        Vertx vertx = Vertx.vertx();
+        Async async = context.async();
+
+        vertx.runOnContext(v -> {
+            // read a few bytes at a time so that rows are split over multiple buffers.
+            AsyncFile file = vertx.fileSystem().openBlocking(toPath(TEST_CSV), new OpenOptions().setRead(true));
+            file.setReadBufferSize(7);
+
+            CSVStreamParser parser = new CSVStreamParser(vertx.getOrCreateContext(), file,
+                    new File(toPath(TEST_CSV)).length());
+            parser.setFileData(null, ROW_OFFSET, TEST_CSV);
+            parser.initialize();
+
+            parser.subscribe(new Subscriber<JsonObject>() {
+                JsonArray list = new JsonArray();
+
+                @Override
+                public void onSubscribe(Subscription subscription) {
+                    subscription.request(3);
+                }
+
+                @Override
+                public void onNext(JsonObject entry) {
+                    list.add(entry);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    context.fail(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    assertParsed(context, list);
+                    context.assertTrue(parser.isStreaming());
+                    context.assertEquals(100.0f, parser.getProgress(list.size()));
+                    vertx.close(context.asyncAssertSuccess());
+                    async.complete();
+                }
+            });
+        });
+    }
+
+    @Test
+    public void testStreamedHeadersMatchFile(TestContext context) throws IOException {
+        Vertx vertx = Vertx.vertx();
+        Async async = context.async();
+        File file = File.createTempFile("headers", ".csv");
+        file.deleteOnExit();
+
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.println("007,1.50,a,a,\"b\",");
+            writer.println("1,2,3,4,5,6");
+        }
+
+        CSVParser fileParser = new CSVParser();
+        fileParser.setFileData(file.getPath(), ROW_OFFSET, file.getName());
+        fileParser.initialize();
+        JsonArray parsed = new JsonArray();
+
+        fileParser.subscribe(new Subscriber<JsonObject>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(JsonObject entry) {
+                parsed.add(entry);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                context.fail(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                fileParser.free();
+            }
+        });
+
+        vertx.runOnContext(v -> {
+            AsyncFile stream = vertx.fileSystem().openBlocking(file.getPath(), new OpenOptions().setRead(true));
+            CSVStreamParser parser = new CSVStreamParser(vertx.getOrCreateContext(), stream, file.length());
+            parser.setFileData(null, ROW_OFFSET, file.getName());
+            parser.initialize();
+
+            parser.subscribe(new Subscriber<JsonObject>() {
+                JsonArray streamed = new JsonArray();
+
+                @Override
+                public void onSubscribe(Subscription subscription) {
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(JsonObject entry) {
+                    streamed.add(entry);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    context.fail(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    JsonObject row = streamed.getJsonObject(0);
+                    context.assertEquals(1, streamed.size());
+                    context.assertEquals(parsed.getJsonObject(0).fieldNames(), row.fieldNames());
+                    context.assertEquals(6, row.size());
+                    context.assertTrue(row.containsKey("007"));
+                    context.assertTrue(row.containsKey("1.50"));
+                    context.assertTrue(row.containsKey("a_2"));
+                    context.assertTrue(row.containsKey("header_1"));
+                    vertx.close(context.asyncAssertSuccess());
+                    async.complete();
+                }
+            });
+        });
+    }
+
+    @Test
+    public void testColumnTypes(TestContext context) throws IOException {
+        for (String fileName : new String[]{TEST_CSV, TEST_XLSX_FILE}) {
+            FileParser parser = ParserFactory.getByFilename(fileName);
+            parser.setFileData(toPath(fileName), ROW_OFFSET, fileName);
+            parser.initialize();
+
+            Map<String, ColumnType> types = parser.getColumnTypes();
+            context.assertEquals(ColumnType.STRING, types.get("name"));
+            context.assertEquals(ColumnType.BOOLEAN, types.get("flag"));
+            context.assertEquals(ColumnType.LONG, types.get("integer"));
+            context.assertEquals(ColumnType.DOUBLE, types.get("float"));
+            parser.free();
+        }
+    }
+
+    @Test
+    public void testSelectSheet(TestContext context) throws IOException {
+        XLSXStreamParser parser = new XLSXStreamParser();
+        parser.setFileData(toPath(TEST_XLSX_FILE), ROW_OFFSET, TEST_XLSX_FILE);
+        context.assertEquals(Collections.singletonList(TEST_SHEET), parser.getSheetNames());
+
+        parser.setSheet(TEST_SHEET);
+        parser.initialize();
+        parser.subscribe(new Subscriber<JsonObject>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(3);
+            }
+
+            @Override
+            public void onNext(JsonObject entry) {
+                context.assertEquals(TEST_SHEET, entry.getString(WorkbookParser.SHEET));
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                context.fail(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        parser.free();
+    }
+
+    @Test(expected = ParserException.class)
+    public void testSelectMissingSheet() throws IOException {
+        XLSXStreamParser parser = new XLSXStreamParser();
+        parser.setFileData(toPath(TEST_XLSX_FILE), ROW_OFFSET, TEST_XLSX_FILE);
+        try {
+            parser.setSheet("missing");
+        } finally {
+            parser.free();
+        }
+    }
+
     @Test
     @Ignore("Run when you need some testing data.")
     public void generateMonsterCSV() throws IOException {
@@ -115,7 +369,11 @@ public class TestParser {
     }
 
     private void testParseFile(TestContext context, String fileName) throws IOException, ParserException {
-        FileParser parser = ParserFactory.getByFilename(fileName);
+        testParseFile(context, ParserFactory.getByFilename(fileName), fileName);
+    }
+
+    private void testParseFile(TestContext context, FileParser parser, String fileName)
+            throws IOException, ParserException {
         parser.setFileData(
                 toPath(fileName),
                 ROW_OFFSET,
@@ -123,6 +381,8 @@ public class TestParser {
         );
 
         parser.initialize();
+        // rows may be emitted after the request returns, when chunks are converted in parallel.
+        Async async = context.async();
 
         parser.subscribe(new Subscriber<JsonObject>() {
             JsonArray list = new JsonArray();
@@ -140,31 +400,36 @@ public class TestParser {
 
             @Override
             public void onError(Throwable throwable) {
-                throw new RuntimeException(throwable);
+                context.fail(throwable);
             }
 
             @Override
             public void onComplete() {
-                context.assertEquals(2, list.size());
-
-                for (int i = 0; i < list.size(); i++) {
-                    JsonObject json = list.getJsonObject(i);
-                    context.assertTrue(json.containsKey("name"));
-                    context.assertTrue(json.containsKey("flag"));
-                    context.assertTrue(json.containsKey("integer"));
-                    context.assertTrue(json.containsKey("float"));
-
-                    int position = i + 1;
-                    context.assertEquals(json.getString("name"), String.format("test_%d", i));
-                    context.assertEquals(json.getBoolean("flag"), position % 2 == 0);
-                    context.assertEquals(json.getInteger("integer"), position * 2);
-                    context.assertEquals(json.getFloat("float"), position * 0.5f);
-                }
+                assertParsed(context, list);
                 parser.free();
+                async.complete();
             }
         });
     }
 
+    private void assertParsed(TestContext context, JsonArray list) {
+        context.assertEquals(2, list.size());
+
+        for (int i = 0; i < list.size(); i++) {
+            JsonObject json = list.getJsonObject(i);
+            context.assertTrue(json.containsKey("name"));
+            context.assertTrue(json.containsKey("flag"));
+            context.assertTrue(json.containsKey("integer"));
+            context.assertTrue(json.containsKey("float"));
+
+            int position = i + 1;
+            context.assertEquals(json.getString("name"), String.format("test_%d", i));
+            context.assertEquals(json.getBoolean("flag"), position % 2 == 0);
+            context.assertEquals(json.getInteger("integer"), position * 2);
+            context.assertEquals(json.getFloat("float"), position * 0.5f);
+        }
+    }
+
     private static String toPath(String resource) {
         return TestParser.class.getResource(resource).getPath();
     }
@@ -0,0 +1,78 @@
+package com.codingchili;
+
+import com.codingchili.excelastic.model.ProgressThrottle;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.codingchili.excelastic.model.ElasticWriter.IMPORT_PROGRESS;
+import static com.codingchili.excelastic.model.ElasticWriter.PROGRESS;
+
+/**
+ * @author Robin Duda
+ * <p>
+ * Tests that the progress of an import is throttled and coalesced.
+ */
+@RunWith(VertxUnitRunner.class)
+public class TestProgressThrottle {
+    private static final int INTERVAL = 200;
+    private List<Integer> published = new ArrayList<>();
+    private ProgressThrottle throttle;
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        throttle = new ProgressThrottle(vertx, INTERVAL);
+        vertx.eventBus().<JsonObject>consumer(IMPORT_PROGRESS,
+                message -> published.add(message.body().getInteger(PROGRESS)));
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void shouldCoalesceProgressWithinInterval(TestContext context) {
+        Async async = context.async();
+
+        vertx.runOnContext(v -> {
+            for (int i = 1; i <= 10; i++) {
+                throttle.publish(new JsonObject().put(PROGRESS, i * 10));
+            }
+            vertx.setTimer(INTERVAL * 3, done -> {
+                context.assertEquals(2, published.size());
+                context.assertEquals(10, published.get(0));
+                context.assertEquals(100, published.get(1));
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void shouldFlushPendingProgress(TestContext context) {
+        Async async = context.async();
+
+        vertx.runOnContext(v -> {
+            throttle.publish(new JsonObject().put(PROGRESS, 10));
+            throttle.publish(new JsonObject().put(PROGRESS, 50));
+            throttle.flush();
+
+            vertx.setTimer(INTERVAL * 2, done -> {
+                context.assertEquals(2, published.size());
+                context.assertEquals(50, published.get(1));
+                async.complete();
+            });
+        });
+    }
+}
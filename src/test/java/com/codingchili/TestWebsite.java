@@ -3,6 +3,8 @@ package com.codingchili;
 import com.codingchili.excelastic.controller.Website;
 import com.codingchili.excelastic.model.Configuration;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.WebSocket;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
@@ -14,18 +16,26 @@ import org.junit.runner.RunWith;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+
+import static com.codingchili.excelastic.controller.Website.UPLOAD_ID;
+import static com.codingchili.excelastic.model.ElasticWriter.IMPORT_PROGRESS;
+import static com.codingchili.excelastic.model.ElasticWriter.PROGRESS;
 
 /**
  * @author Robin Duda
  */
 @RunWith(VertxUnitRunner.class)
 public class TestWebsite {
+    private Website website;
     private Vertx vertx;
 
     @Before
     public void setUp(TestContext context) {
         vertx = Vertx.vertx();
-        vertx.deployVerticle(new Website(), context.asyncAssertSuccess());
+        website = new Website();
+        vertx.deployVerticle(website, context.asyncAssertSuccess());
     }
 
     @After
@@ -67,6 +77,61 @@ public class TestWebsite {
         return Files.readAllBytes(Paths.get("src/test/java/test.xlsx"));
     }
 
+    @Test
+    public void shouldRouteProgressByUploadId(TestContext context) {
+        Async async = context.async();
+        Map<String, List<Integer>> received = Collections.synchronizedMap(new HashMap<>());
+        HttpClient client = vertx.createHttpClient();
+
+        client.websocket(Configuration.getWebPort(), "localhost", "/", first -> {
+            client.websocket(Configuration.getWebPort(), "localhost", "/", second -> {
+                listen(first, "first", received);
+                listen(second, "second", received);
+
+                waitFor(() -> website.getSubscribers("first") == 1 && website.getSubscribers("second") == 1, () -> {
+                    vertx.eventBus().publish(IMPORT_PROGRESS, new JsonObject().put(UPLOAD_ID, "first").put(PROGRESS, 10));
+                    vertx.eventBus().publish(IMPORT_PROGRESS, new JsonObject().put(UPLOAD_ID, "second").put(PROGRESS, 20));
+                    vertx.eventBus().publish(IMPORT_PROGRESS, new JsonObject().put(UPLOAD_ID, "other").put(PROGRESS, 30));
+
+                    vertx.setTimer(500, done -> {
+                        // each websocket only receives the progress of the upload it listens to.
+                        context.assertEquals(Collections.singletonList(10), received.get("first"));
+                        context.assertEquals(Collections.singletonList(20), received.get("second"));
+
+                        first.close();
+                        waitFor(() -> website.getSubscribers("first") == 0, () -> {
+                            context.assertEquals(1, website.getSubscribers("second"));
+                            async.complete();
+                        });
+                    });
+                });
+            });
+        });
+    }
+
+    /**
+     * Subscribes the websocket to the progress of the given upload and records the progress it receives.
+     */
+    private void listen(WebSocket websocket, String uploadId, Map<String, List<Integer>> received) {
+        received.put(uploadId, Collections.synchronizedList(new ArrayList<>()));
+        websocket.textMessageHandler(text -> {
+            JsonObject message = new JsonObject(text);
+            if (message.containsKey(PROGRESS)) {
+                received.get(uploadId).add(message.getInteger(PROGRESS));
+            }
+        });
+        websocket.writeFinalTextFrame(new JsonObject().put(UPLOAD_ID, uploadId).encode());
+    }
+
+    private void waitFor(BooleanSupplier condition, Runnable then) {
+        vertx.setPeriodic(10, timer -> {
+            if (condition.getAsBoolean()) {
+                vertx.cancelTimer(timer);
+                then.run();
+            }
+        });
+    }
+
     @Test
     public void shouldFailUpload(TestContext context) {
         Async async = context.async();
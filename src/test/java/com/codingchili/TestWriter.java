@@ -1,15 +1,27 @@
 package com.codingchili;
 
 import com.codingchili.excelastic.model.*;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.Timeout;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import org.junit.*;
 import org.junit.runner.RunWith;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Robin Duda
@@ -45,7 +57,7 @@ public class TestWriter {
             });
         }).listen(Configuration.getElasticPort());
 
-        ExcelParser fileParser = new ExcelParser();
+        XLSStreamParser fileParser = new XLSStreamParser();
         fileParser.setFileData(getClass().getResource(TestParser.TEST_XLS_FILE).getPath(),
                 TestParser.ROW_OFFSET,
                 "testFileName.xls");
@@ -57,4 +69,511 @@ public class TestWriter {
                 .setMapping("test-mapping"));
     }
 
+    @Test
+    public void shouldIndexAllItems(TestContext context) throws IOException {
+        Async async = context.async();
+        AtomicInteger indexed = new AtomicInteger();
+
+        vertx.createHttpServer().requestHandler(request -> {
+            request.bodyHandler(body -> {
+                if (request.path().endsWith("/_bulk")) {
+                    // each item is a header line followed by the item.
+                    indexed.addAndGet(body.toString().split("\n").length / 2);
+                }
+                request.response().end(new JsonObject()
+                        .put("version", new JsonObject().put("number", "6.0.0"))
+                        .put("errors", false).encode());
+            });
+        }).listen(Configuration.getElasticPort(), context.asyncAssertSuccess(listening -> {
+            CSVParser parser = new CSVParser();
+            try {
+                parser.setFileData(getClass().getResource(TestParser.TEST_CSV).getPath(),
+                        TestParser.ROW_OFFSET, "testFileName.csv");
+            } catch (FileNotFoundException e) {
+                context.fail(e);
+            }
+            parser.initialize();
+
+            vertx.eventBus().send(Configuration.INDEXING_ELASTICSEARCH, new ImportEvent()
+                    .setParser(parser)
+                    .setIndex("text-index")
+                    .setClearExisting(false)
+                    .setMapping("test-mapping"), context.asyncAssertSuccess(reply -> {
+                context.assertEquals(parser.getNumberOfElements(), indexed.get());
+                async.complete();
+            }));
+        }));
+    }
+
+    @Test
+    public void shouldRetryRejectedBulk(TestContext context) {
+        Async async = context.async();
+        AtomicInteger indexed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        vertx.createHttpServer().requestHandler(request -> {
+            request.bodyHandler(body -> {
+                if (request.path().endsWith("/_bulk")) {
+                    if (rejected.getAndIncrement() == 0) {
+                        request.response().setStatusCode(429).end();
+                        return;
+                    }
+                    indexed.addAndGet(body.toString().split("\n").length / 2);
+                }
+                request.response().end(new JsonObject()
+                        .put("version", new JsonObject().put("number", "6.0.0"))
+                        .put("took", 1)
+                        .put("errors", false).encode());
+            });
+        }).listen(Configuration.getElasticPort(), context.asyncAssertSuccess(listening -> {
+            CSVParser parser = new CSVParser();
+            try {
+                parser.setFileData(getClass().getResource(TestParser.TEST_CSV).getPath(),
+                        TestParser.ROW_OFFSET, "testFileName.csv");
+            } catch (FileNotFoundException e) {
+                context.fail(e);
+            }
+            parser.initialize();
+
+            vertx.eventBus().send(Configuration.INDEXING_ELASTICSEARCH, new ImportEvent()
+                    .setParser(parser)
+                    .setIndex("text-index")
+                    .setClearExisting(false)
+                    .setMapping("test-mapping"), context.asyncAssertSuccess(reply -> {
+                context.assertTrue(rejected.get() > 1);
+                context.assertEquals(parser.getNumberOfElements(), indexed.get());
+                async.complete();
+            }));
+        }));
+    }
+
+    @Test
+    public void shouldRetryServerErrorsAndFailOnClientErrors(TestContext context) {
+        Async async = context.async();
+        List<Integer> statuses = new ArrayList<>();
+
+        vertx.createHttpServer().requestHandler(request -> {
+            request.bodyHandler(body -> {
+                if (request.path().endsWith("/_bulk")) {
+                    // the cluster is unavailable and then the credentials are rejected.
+                    int status = (statuses.isEmpty()) ? 503 : 401;
+                    statuses.add(status);
+                    request.response().setStatusCode(status).end();
+                } else {
+                    request.response().end(new JsonObject()
+                            .put("version", new JsonObject().put("number", "6.0.0"))
+                            .put("errors", false).encode());
+                }
+            });
+        }).listen(Configuration.getElasticPort(), context.asyncAssertSuccess(listening -> {
+            CSVParser parser = new CSVParser();
+            try {
+                parser.setFileData(getClass().getResource(TestParser.TEST_CSV).getPath(),
+                        TestParser.ROW_OFFSET, "testFileName.csv");
+            } catch (FileNotFoundException e) {
+                context.fail(e);
+            }
+            parser.initialize();
+
+            vertx.eventBus().send(Configuration.INDEXING_ELASTICSEARCH, new ImportEvent()
+                    .setParser(parser)
+                    .setIndex("text-index")
+                    .setClearExisting(false)
+                    .setMapping("test-mapping"), context.asyncAssertFailure(error -> {
+                // the server error is retried, the client error fails the import without retrying.
+                context.assertEquals(Arrays.asList(503, 401), statuses);
+                async.complete();
+            }));
+        }));
+    }
+
+    @Test
+    public void shouldReuseConnections(TestContext context) {
+        Async async = context.async();
+        AtomicInteger connections = new AtomicInteger();
+
+        vertx.createHttpServer().connectionHandler(connection -> connections.incrementAndGet())
+                .requestHandler(request -> request.bodyHandler(body -> request.response().end(new JsonObject()
+                        .put("version", new JsonObject().put("number", "6.0.0"))
+                        .put("errors", false).encode())))
+                .listen(Configuration.getElasticPort(), context.asyncAssertSuccess(listening -> {
+                    importFile(context, first -> importFile(context, second -> {
+                        context.assertEquals(1, connections.get());
+                        async.complete();
+                    }));
+                }));
+    }
+
+    @Test
+    public void shouldRetryRejectedItems(TestContext context) {
+        Async async = context.async();
+        List<Integer> items = new ArrayList<>();
+
+        vertx.createHttpServer().requestHandler(request -> {
+            request.bodyHandler(body -> {
+                JsonObject response = new JsonObject()
+                        .put("version", new JsonObject().put("number", "6.0.0"))
+                        .put("took", 1)
+                        .put("errors", false);
+
+                if (request.path().endsWith("/_bulk")) {
+                    items.add(body.toString().split("\n").length / 2);
+
+                    if (items.size() == 1) {
+                        // reject the first item and fail the second item of the first request.
+                        response.put("errors", true).put("items", new JsonArray()
+                                .add(new JsonObject().put("index", new JsonObject().put("status", 429)
+                                        .put("error", new JsonObject().put("type", "es_rejected_execution_exception"))))
+                                .add(new JsonObject().put("index", new JsonObject().put("status", 400)
+                                        .put("error", new JsonObject().put("type", "mapper_parsing_exception")))));
+                    }
+                }
+                request.response().end(response.encode());
+            });
+        }).listen(Configuration.getElasticPort(), context.asyncAssertSuccess(listening -> {
+            CSVParser parser = new CSVParser();
+            try {
+                parser.setFileData(getClass().getResource(TestParser.TEST_CSV).getPath(),
+                        TestParser.ROW_OFFSET, "testFileName.csv");
+            } catch (FileNotFoundException e) {
+                context.fail(e);
+            }
+            parser.initialize();
+
+            vertx.eventBus().send(Configuration.INDEXING_ELASTICSEARCH, new ImportEvent()
+                    .setParser(parser)
+                    .setIndex("text-index")
+                    .setClearExisting(false)
+                    .setMapping("test-mapping"), context.asyncAssertSuccess(reply -> {
+                context.assertEquals(Arrays.asList(parser.getNumberOfElements(), 1), items);
+                context.assertEquals(parser.getNumberOfElements() - 1, reply.body());
+                async.complete();
+            }));
+        }));
+    }
+
+    @Test
+    public void shouldRestoreSettingsAfterFastLoad(TestContext context) {
+        Async async = context.async();
+        List<String> requests = new ArrayList<>();
+        List<JsonObject> settings = new ArrayList<>();
+
+        vertx.createHttpServer().requestHandler(request -> {
+            request.bodyHandler(body -> {
+                if (request.path().startsWith("/fast-index")) {
+                    requests.add(request.method() + " " + request.path());
+                }
+                if (request.path().endsWith("/_settings")) {
+                    settings.add(body.toJsonObject());
+                }
+                if (request.method() == HttpMethod.HEAD) {
+                    request.response().setStatusCode(404).end();
+                } else {
+                    request.response().end(new JsonObject()
+                            .put("version", new JsonObject().put("number", "6.0.0"))
+                            .put("errors", false).encode());
+                }
+            });
+        }).listen(Configuration.getElasticPort(), context.asyncAssertSuccess(listening -> {
+            CSVParser parser = new CSVParser();
+            try {
+                parser.setFileData(getClass().getResource(TestParser.TEST_CSV).getPath(),
+                        TestParser.ROW_OFFSET, "testFileName.csv");
+            } catch (FileNotFoundException e) {
+                context.fail(e);
+            }
+            parser.initialize();
+
+            vertx.eventBus().send(Configuration.INDEXING_ELASTICSEARCH, new ImportEvent()
+                    .setParser(parser)
+                    .setIndex("fast-index")
+                    .setClearExisting(false)
+                    .setFastLoad(true)
+                    .setMapping("test-mapping"), context.asyncAssertSuccess(reply -> {
+                context.assertEquals(Arrays.asList(
+                        "HEAD /fast-index",
+                        "PUT /fast-index",
+                        "PUT /fast-index/_settings",
+                        "HEAD /fast-index",
+                        "PUT /fast-index",
+                        "POST /fast-index/_bulk",
+                        "PUT /fast-index/_settings",
+                        "POST /fast-index/_refresh"), requests);
+
+                JsonObject restored = settings.get(1).getJsonObject("index");
+                context.assertTrue(restored.containsKey("refresh_interval"));
+                context.assertNull(restored.getValue("refresh_interval"));
+                async.complete();
+            }));
+        }));
+    }
+
+    @Test
+    public void shouldPutMappingBeforeIndexing(TestContext context) {
+        Async async = context.async();
+        List<String> requests = new ArrayList<>();
+        List<JsonObject> mappings = new ArrayList<>();
+
+        vertx.createHttpServer().requestHandler(request -> {
+            request.bodyHandler(body -> {
+                requests.add(request.method() + " " + request.path());
+                if (request.path().endsWith("/_mapping/test-mapping")) {
+                    mappings.add(body.toJsonObject());
+                }
+                request.response().end(new JsonObject()
+                        .put("version", new JsonObject().put("number", "6.0.0"))
+                        .put("errors", false).encode());
+            });
+        }).listen(Configuration.getElasticPort(), context.asyncAssertSuccess(listening -> {
+            importFile(context, done -> {
+                JsonObject properties = mappings.get(0).getJsonObject("properties");
+                context.assertEquals("text", properties.getJsonObject("name").getString("type"));
+                context.assertEquals("boolean", properties.getJsonObject("flag").getString("type"));
+                context.assertEquals("long", properties.getJsonObject("integer").getString("type"));
+                context.assertEquals("double", properties.getJsonObject("float").getString("type"));
+                context.assertTrue(requests.indexOf("PUT /text-index/_mapping/test-mapping") <
+                        requests.indexOf("POST /text-index/_bulk"));
+                async.complete();
+            });
+        }));
+    }
+
+    @Test
+    public void shouldPutMappingOfSheetsIntoNewIndex(TestContext context) {
+        Async async = context.async();
+        List<String> mappings = new ArrayList<>();
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger imported = new AtomicInteger();
+
+        vertx.createHttpServer().requestHandler(request -> {
+            request.bodyHandler(body -> {
+                if (request.method() == HttpMethod.HEAD) {
+                    // both sheets find that the index does not exist.
+                    request.response().setStatusCode(404).end();
+                } else if (request.method() == HttpMethod.PUT && request.path().equals("/sheet-index")) {
+                    if (created.getAndIncrement() == 0) {
+                        mappings.add(request.path());
+                        request.response().end(new JsonObject().put("acknowledged", true).encode());
+                    } else {
+                        request.response().setStatusCode(400).end(new JsonObject()
+                                .put("error", new JsonObject().put("type", "resource_already_exists_exception"))
+                                .encode());
+                    }
+                } else {
+                    if (request.path().endsWith("/_mapping/test-mapping")) {
+                        mappings.add(request.path());
+                    }
+                    request.response().end(new JsonObject()
+                            .put("version", new JsonObject().put("number", "6.0.0"))
+                            .put("errors", false).encode());
+                }
+            });
+        }).listen(Configuration.getElasticPort(), context.asyncAssertSuccess(listening -> {
+            for (String sheet : Arrays.asList("first", "second")) {
+                CSVParser parser = new CSVParser();
+                try {
+                    parser.setFileData(getClass().getResource(TestParser.TEST_CSV).getPath(),
+                            TestParser.ROW_OFFSET, "testFileName.csv");
+                } catch (FileNotFoundException e) {
+                    context.fail(e);
+                }
+                parser.initialize();
+
+                vertx.eventBus().send(Configuration.INDEXING_ELASTICSEARCH, new ImportEvent()
+                        .setParser(parser)
+                        .setIndex("sheet-index")
+                        .setSheet(sheet)
+                        .setClearExisting(false)
+                        .setMapping("test-mapping"), context.asyncAssertSuccess(reply -> {
+                    if (imported.incrementAndGet() == 2) {
+                        // the mapping of the sheet that did not create the index is put on the index.
+                        context.assertEquals(2, created.get());
+                        context.assertEquals(Arrays.asList("/sheet-index", "/sheet-index/_mapping/test-mapping"),
+                                mappings);
+                        async.complete();
+                    }
+                }));
+            }
+        }));
+    }
+
+    @Test
+    public void shouldCancelImportWhileParsing(TestContext context) {
+        Async async = context.async();
+        AtomicInteger bulks = new AtomicInteger();
+
+        vertx.createHttpServer().requestHandler(request -> {
+            request.bodyHandler(body -> {
+                if (request.path().endsWith("/_bulk")) {
+                    bulks.incrementAndGet();
+                }
+                request.response().end(new JsonObject()
+                        .put("version", new JsonObject().put("number", "6.0.0"))
+                        .put("errors", false).encode());
+            });
+        }).listen(Configuration.getElasticPort(), context.asyncAssertSuccess(listening -> {
+            // events without a parser are parsed by the writer, as when received from another node.
+            vertx.eventBus().send(Configuration.INDEXING_ELASTICSEARCH, new ImportEvent()
+                    .setIndex("text-index")
+                    .setUploadId("cancelled")
+                    .setClearExisting(false)
+                    .setMapping("test-mapping")
+                    .setFile(getClass().getResource(TestParser.TEST_CSV).getPath())
+                    .setFileName("testFileName.csv")
+                    .setOffset(TestParser.ROW_OFFSET), context.asyncAssertFailure(error -> {
+                context.assertEquals(0, bulks.get());
+                async.complete();
+            }));
+            vertx.eventBus().publish(ElasticWriter.IMPORT_CANCEL, "cancelled");
+        }));
+    }
+
+    @Test
+    public void shouldCompleteImportWithoutRows(TestContext context) throws IOException {
+        Async async = context.async();
+        File file = File.createTempFile("empty", ".csv");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "name,flag,integer,float\n".getBytes());
+
+        vertx.createHttpServer().requestHandler(request -> request.bodyHandler(body ->
+                request.response().end(new JsonObject()
+                        .put("version", new JsonObject().put("number", "6.0.0"))
+                        .put("errors", false).encode()))
+        ).listen(Configuration.getElasticPort(), context.asyncAssertSuccess(listening -> {
+            CSVParser parser = new CSVParser();
+            try {
+                parser.setFileData(file.getPath(), TestParser.ROW_OFFSET, file.getName());
+            } catch (FileNotFoundException e) {
+                context.fail(e);
+            }
+            parser.initialize();
+
+            vertx.eventBus().send(Configuration.INDEXING_ELASTICSEARCH, new ImportEvent()
+                    .setParser(parser)
+                    .setIndex("text-index")
+                    .setClearExisting(false)
+                    .setMapping("test-mapping"), context.asyncAssertSuccess(reply -> {
+                context.assertEquals(0, reply.body());
+                async.complete();
+            }));
+        }));
+    }
+
+    @Test
+    public void shouldHandleItemsOnWriterContext(TestContext context) {
+        Async async = context.async();
+        AtomicInteger indexed = new AtomicInteger();
+        Set<Context> contexts = Collections.synchronizedSet(new HashSet<>());
+        // a context that is not the context of the writer, as when rows are streamed from the website.
+        Context emitter = vertx.getOrCreateContext();
+
+        vertx.createHttpServer().requestHandler(request -> {
+            request.bodyHandler(body -> {
+                if (request.path().endsWith("/_bulk")) {
+                    indexed.addAndGet(body.toString().split("\n").length / 2);
+                }
+                request.response().end(new JsonObject()
+                        .put("version", new JsonObject().put("number", "6.0.0"))
+                        .put("errors", false).encode());
+            });
+        }).listen(Configuration.getElasticPort(), context.asyncAssertSuccess(listening -> {
+            ContextParser parser = new ContextParser(emitter, contexts, 1000);
+
+            vertx.eventBus().send(Configuration.INDEXING_ELASTICSEARCH, new ImportEvent()
+                    .setParser(parser)
+                    .setIndex("text-index")
+                    .setClearExisting(false)
+                    .setMapping("test-mapping"), context.asyncAssertSuccess(reply -> {
+                // all requests for items are made from the context of the writer.
+                context.assertEquals(1, contexts.size());
+                context.assertFalse(contexts.contains(emitter));
+                context.assertEquals(1000, indexed.get());
+                async.complete();
+            }));
+        }));
+    }
+
+    /**
+     * Emits rows on the given context and records the contexts that rows are requested from.
+     */
+    private static class ContextParser implements FileParser {
+        private final Context emitter;
+        private final Set<Context> contexts;
+        private final int rows;
+        private int emitted = 0;
+
+        ContextParser(Context emitter, Set<Context> contexts, int rows) {
+            this.emitter = emitter;
+            this.contexts = contexts;
+            this.rows = rows;
+        }
+
+        @Override
+        public void setFileData(String localFileName, int offset, String fileName) {
+        }
+
+        @Override
+        public Set<String> getSupportedFileExtensions() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void initialize() {
+        }
+
+        @Override
+        public int getNumberOfElements() {
+            return rows;
+        }
+
+        @Override
+        public Map<String, ColumnType> getColumnTypes() {
+            return new LinkedHashMap<>();
+        }
+
+        @Override
+        public void free() {
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super JsonObject> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long count) {
+                    contexts.add(Vertx.currentContext());
+
+                    emitter.runOnContext(v -> {
+                        for (int i = 0; i < count && emitted < rows; i++) {
+                            subscriber.onNext(new JsonObject().put("row", emitted++));
+
+                            if (emitted == rows) {
+                                subscriber.onComplete();
+                            }
+                        }
+                    });
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+        }
+    }
+
+    private void importFile(TestContext context, Handler<Void> done) {
+        CSVParser parser = new CSVParser();
+        try {
+            parser.setFileData(getClass().getResource(TestParser.TEST_CSV).getPath(),
+                    TestParser.ROW_OFFSET, "testFileName.csv");
+        } catch (FileNotFoundException e) {
+            context.fail(e);
+        }
+        parser.initialize();
+
+        vertx.eventBus().send(Configuration.INDEXING_ELASTICSEARCH, new ImportEvent()
+                .setParser(parser)
+                .setIndex("text-index")
+                .setClearExisting(false)
+                .setMapping("test-mapping"), context.asyncAssertSuccess(reply -> done.handle(null)));
+    }
 }